@@ -292,7 +292,7 @@ class R2CActivity : AppCompatActivity(), R2CRest.ClientListChangedListener  {
             override fun onLocationResult(locationResult: LocationResult) {
                 for (location in locationResult.locations) {
                     if (location != null) {
-                        DataManager?.receiverLocation = location
+                        DataManager?.setReceiverLocation(location)
                         CaltopoClientMap.UpdateMyLocation(location)
                     }
                 }
@@ -54,6 +54,7 @@ public class ScanningService extends Service {
         }
         scanning = true;
         CaltopoClient.CTDebug(TAG, String.format(Locale.US, "startScanning(): ScanningService 0x%x", this.hashCode()));
+        mDataManager.start();
         wiFiScanner = new WiFiScanner(mAppContext, mDataManager);
         wiFiScanner.startScan();
 
@@ -69,6 +70,7 @@ public class ScanningService extends Service {
         CaltopoClient.CTDebug(TAG, String.format(Locale.US, "stopScanning(): ScanningService 0x%x", this.hashCode()));
         wiFiScanner.stopScan();
         btScanner.stopScan();
+        mDataManager.stop();
         scanning = false;
     }
 
@@ -34,6 +34,7 @@ import android.content.Intent;
 import android.content.res.Resources;
 import android.net.Uri;
 import android.os.Build;
+import android.os.SystemClock;
 import android.provider.DocumentsContract;
 import android.util.Log;
 
@@ -56,6 +57,7 @@ import java.util.Date;
 import java.util.Locale;
 import java.util.Hashtable;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.io.*;
@@ -69,13 +71,14 @@ import org.ncssar.rid2caltopo.BuildConfig;
 import org.ncssar.rid2caltopo.R;
 import org.ncssar.rid2caltopo.app.R2CActivity;
 import org.ncssar.rid2caltopo.app.ScanningService;
+import org.opendroneid.android.data.LinkStats;
 
 
 /*
  * Persistent state management for CaltopoClient
  */
 class ClientClassState implements Serializable {
-    private static final long SerialVersionUID = 19L; // Serializable version.
+    private static final long SerialVersionUID = 22L; // Serializable version.
     public long minDistanceInFeet;
     public String groupId;
     public String archivePath;
@@ -85,6 +88,11 @@ class ClientClassState implements Serializable {
     public boolean useDirectFlag;
     public long newTrackDelayInSeconds;
     public int debugLevel;
+    public boolean bleBatchMode;
+    public long bleReportDelayInMsec;
+    public int bleBatchSize;
+    public long aircraftPublishIntervalInMsec;
+    public long bleQuietPeriodInSeconds;
     public Hashtable<String, CtDroneSpec> droneSpecTable;  // Table to map remoteIDs to their data
 
     // Default/initial state for the caltopo client:
@@ -98,6 +106,11 @@ class ClientClassState implements Serializable {
         useDirectFlag = false;
         newTrackDelayInSeconds = 20;
         debugLevel = -1; // undefined.
+        bleBatchMode = false;
+        bleReportDelayInMsec = CaltopoClient.DEFAULT_BLE_REPORT_DELAY_IN_MSEC;
+        bleBatchSize = CaltopoClient.DEFAULT_BLE_BATCH_SIZE;
+        aircraftPublishIntervalInMsec = CaltopoClient.DEFAULT_AIRCRAFT_PUBLISH_INTERVAL_IN_MSEC;
+        bleQuietPeriodInSeconds = CaltopoClient.DEFAULT_BLE_QUIET_PERIOD_IN_SECONDS;
         droneSpecTable = new Hashtable<>(16);
     }
 
@@ -127,11 +140,14 @@ class ClientClassState implements Serializable {
 
         return String.format(Locale.US,
                 "vers:'%d', minDist:'%d' ft, groupId:'%s', mapId:'%s', useDirectFlag:'%s'\n" +
-                        "newTrackDelayInSec:%d, debugLevel:%s, " +
+                        "newTrackDelayInSec:%d, debugLevel:%s, bleBatchMode:%s, bleReportDelay:%d ms, bleBatchSize:%d, " +
+                        "aircraftPublishInterval:%d ms, bleQuietPeriod:%d s, " +
                         "archivePath: '%s', \n caltopoTrackFolder: '%s', caltopoDomainAndPort:%s, \n" +
                         "teamId: '%s', credId: '%s' credSecret: '%s', ht: %s",
                 SerialVersionUID, minDistanceInFeet, groupId, mapId, useDirectFlag,
                 newTrackDelayInSeconds, LoggingLevelName(debugLevel),
+                bleBatchMode, bleReportDelayInMsec, bleBatchSize, aircraftPublishIntervalInMsec,
+                bleQuietPeriodInSeconds,
                 (archivePath == null) ? "" : archivePath,
                 caltopoTrackFolder, domainAndPort, teamId, credId, credSecret,
                 CaltopoClient.DroneSpecStringRep(droneSpecTable));
@@ -148,6 +164,20 @@ public class CaltopoClient implements CtDroneSpec.CtDroneSpecListener, CaltopoCl
 
     static final long MIN_DISTANCE_IN_FEET = 2;
     static final long MIN_NEW_TRACK_DELAY_IN_SECONDS = 15;
+    static final long DEFAULT_BLE_REPORT_DELAY_IN_MSEC = 1000;
+    static final long MIN_BLE_REPORT_DELAY_IN_MSEC = 100;
+    static final long MAX_BLE_REPORT_DELAY_IN_MSEC = 10000;
+    static final int DEFAULT_BLE_BATCH_SIZE = 32;
+    static final int MIN_BLE_BATCH_SIZE = 1;
+    static final int MAX_BLE_BATCH_SIZE = 256;
+    static final long DEFAULT_AIRCRAFT_PUBLISH_INTERVAL_IN_MSEC = 250;
+    static final long MIN_AIRCRAFT_PUBLISH_INTERVAL_IN_MSEC = 50;
+    static final long MAX_AIRCRAFT_PUBLISH_INTERVAL_IN_MSEC = 5000;
+    static final long DEFAULT_BLE_QUIET_PERIOD_IN_SECONDS = 300;
+    static final long MIN_BLE_QUIET_PERIOD_IN_SECONDS = 0;
+    // The scanner checks for quiet every 15 seconds, so a shorter period couldn't be honoured.
+    static final long MIN_NONZERO_BLE_QUIET_PERIOD_IN_SECONDS = 15;
+    static final long MAX_BLE_QUIET_PERIOD_IN_SECONDS = 3600;
     static final long MainThreadId = android.os.Process.myTid();
     private static final String BASE_URL = "https://caltopo.com/api/v1/position/report/";
     private static final String TAG = "CaltopoClient";
@@ -158,10 +188,11 @@ public class CaltopoClient implements CtDroneSpec.CtDroneSpecListener, CaltopoCl
     public static final int DebugLevelInfo = 3;
     public static int DebugLevel = DebugLevelDebug;
     private static final int ThreadPoolSize = 1;
-    private static boolean WarnMissingGroupId = false;
-    private static boolean WarnMissingMapFlag = false;
-    private static boolean WarnConnectingToMapFlag = false;
-    private static Hashtable<String, CaltopoClient> ClientMap;
+    private static volatile boolean WarnMissingGroupId = false;
+    private static volatile boolean WarnMissingMapFlag = false;
+    private static volatile boolean WarnConnectingToMapFlag = false;
+    // Looked up from the CaltopoWorkers threads, so has to be safe for concurrent use.
+    private static final ConcurrentHashMap<String, CaltopoClient> ClientMap = new ConcurrentHashMap<>(16);
     private static ExecutorService ExecutorPool = null;
     private static ClientClassState Ccstate = null;
 //    private static final String MyStateFileName = TAG + BuildConfig.BUILD_TIME + ".ser";
@@ -173,14 +204,15 @@ public class CaltopoClient implements CtDroneSpec.CtDroneSpecListener, CaltopoCl
     private static long BytesWrittenToDebugOutputStream;
     private static final long MAX_SIZE_DEBUG_OUTPUT = 10000000;
     private static CtDroneSpec.DroneSpecsChangedListener DroneSpecsChangedListener;
-    private static CaltopoClientMap.MapStatusListener.mapStatus MapStatus;
-    private static boolean MapStatusChangedFlag;
+    private static volatile CaltopoClientMap.MapStatusListener.mapStatus MapStatus;
+    private static volatile boolean MapStatusChangedFlag;
     private static CaltopoClientMap MyCaltopoClientMap = null;
     private static Uri DebugLogPath = null;
 
     // CaltopoClient INSTANCE VARS:=
     private final String remoteId;
     private CtDroneSpec droneSpec;
+    private final WaypointSourceSelector sourceSelector = new WaypointSourceSelector();
     private CaltopoLiveTrack liveTrack;
 
     private final DelayedExec idleTimeoutPoll;
@@ -252,6 +284,10 @@ public class CaltopoClient implements CtDroneSpec.CtDroneSpecListener, CaltopoCl
     }
 
     public static void UpdateDroneSpecs() {
+        if (MainThreadId != android.os.Process.myTid()) {
+            RunOnMainThread(CaltopoClient::UpdateDroneSpecs);
+            return;
+        }
         if (null != DroneSpecsChangedListener) {
             DroneSpecsChangedListener.onDroneSpecsChanged(GetSortedCurrentDroneSpecArray(true));
             if (null == UiUpdatePoll) {
@@ -533,6 +569,102 @@ public class CaltopoClient implements CtDroneSpec.CtDroneSpecListener, CaltopoCl
         return ccs.useDirectFlag;
     }
 
+    /* BLE batch mode has the controller hold scan results for up to the report delay and
+     * deliver them together, trading latency for fewer wakeups on long searches.  The batch
+     * size is the most frames the ingest thread decodes in one pass.  Changes take effect the
+     * next time scanning is started.
+     */
+    public static void SetBleBatchMode(boolean flag) {
+        ClientClassState ccs = GetState();
+        if (ccs.bleBatchMode != flag) {
+            ccs.bleBatchMode = flag;
+            NotifySettingsChanged();
+            ArchiveState("bleBatchMode changed to " + flag);
+        }
+    }
+
+    public static boolean GetBleBatchMode() {
+        ClientClassState ccs = GetState();
+        return ccs.bleBatchMode;
+    }
+
+    public static long SetBleReportDelayInMsec(long delayInMsec) {
+        ClientClassState ccs = GetState();
+        if (delayInMsec < MIN_BLE_REPORT_DELAY_IN_MSEC) delayInMsec = MIN_BLE_REPORT_DELAY_IN_MSEC;
+        if (delayInMsec > MAX_BLE_REPORT_DELAY_IN_MSEC) delayInMsec = MAX_BLE_REPORT_DELAY_IN_MSEC;
+        if (ccs.bleReportDelayInMsec != delayInMsec) {
+            ccs.bleReportDelayInMsec = delayInMsec;
+            NotifySettingsChanged();
+            ArchiveState("bleReportDelayInMsec changed");
+        }
+        return ccs.bleReportDelayInMsec;
+    }
+
+    public static long GetBleReportDelayInMsec() {
+        ClientClassState ccs = GetState();
+        return ccs.bleReportDelayInMsec;
+    }
+
+    public static int SetBleBatchSize(int batchSize) {
+        ClientClassState ccs = GetState();
+        if (batchSize < MIN_BLE_BATCH_SIZE) batchSize = MIN_BLE_BATCH_SIZE;
+        if (batchSize > MAX_BLE_BATCH_SIZE) batchSize = MAX_BLE_BATCH_SIZE;
+        if (ccs.bleBatchSize != batchSize) {
+            ccs.bleBatchSize = batchSize;
+            NotifySettingsChanged();
+            ArchiveState("bleBatchSize changed");
+        }
+        return ccs.bleBatchSize;
+    }
+
+    public static int GetBleBatchSize() {
+        ClientClassState ccs = GetState();
+        return ccs.bleBatchSize;
+    }
+
+    /* How often aircraft state decoded from received frames is published to the display.
+     * Takes effect the next time scanning is started.
+     */
+    public static long SetAircraftPublishIntervalInMsec(long intervalInMsec) {
+        ClientClassState ccs = GetState();
+        if (intervalInMsec < MIN_AIRCRAFT_PUBLISH_INTERVAL_IN_MSEC) intervalInMsec = MIN_AIRCRAFT_PUBLISH_INTERVAL_IN_MSEC;
+        if (intervalInMsec > MAX_AIRCRAFT_PUBLISH_INTERVAL_IN_MSEC) intervalInMsec = MAX_AIRCRAFT_PUBLISH_INTERVAL_IN_MSEC;
+        if (ccs.aircraftPublishIntervalInMsec != intervalInMsec) {
+            ccs.aircraftPublishIntervalInMsec = intervalInMsec;
+            NotifySettingsChanged();
+            ArchiveState("aircraftPublishIntervalInMsec changed");
+        }
+        return ccs.aircraftPublishIntervalInMsec;
+    }
+
+    public static long GetAircraftPublishIntervalInMsec() {
+        ClientClassState ccs = GetState();
+        return ccs.aircraftPublishIntervalInMsec;
+    }
+
+    /* How long the BLE scan stays in low latency mode after the last drone was heard before
+     * stepping down to balanced and then low power.  0 keeps it in low latency mode, any other
+     * value is at least the 15 second interval the scanner checks at.
+     */
+    public static long SetBleQuietPeriodInSeconds(long quietPeriodInSeconds) {
+        ClientClassState ccs = GetState();
+        if (quietPeriodInSeconds < MIN_BLE_QUIET_PERIOD_IN_SECONDS) quietPeriodInSeconds = MIN_BLE_QUIET_PERIOD_IN_SECONDS;
+        if (quietPeriodInSeconds > MAX_BLE_QUIET_PERIOD_IN_SECONDS) quietPeriodInSeconds = MAX_BLE_QUIET_PERIOD_IN_SECONDS;
+        if (0 != quietPeriodInSeconds && quietPeriodInSeconds < MIN_NONZERO_BLE_QUIET_PERIOD_IN_SECONDS)
+            quietPeriodInSeconds = MIN_NONZERO_BLE_QUIET_PERIOD_IN_SECONDS;
+        if (ccs.bleQuietPeriodInSeconds != quietPeriodInSeconds) {
+            ccs.bleQuietPeriodInSeconds = quietPeriodInSeconds;
+            NotifySettingsChanged();
+            ArchiveState("bleQuietPeriodInSeconds changed");
+        }
+        return ccs.bleQuietPeriodInSeconds;
+    }
+
+    public static long GetBleQuietPeriodInSeconds() {
+        ClientClassState ccs = GetState();
+        return ccs.bleQuietPeriodInSeconds;
+    }
+
     public static void SetCaltopoSessionConfig(@NonNull CaltopoSessionConfig cfg)
             throws RuntimeException {
         if (!CaltopoSessionConfig.sniffTest(cfg)) {
@@ -575,16 +707,25 @@ public class CaltopoClient implements CtDroneSpec.CtDroneSpecListener, CaltopoCl
         }
         return retval;
     }
+    /* Runs r now if called on the main thread, otherwise posts it to the main thread. */
+    public static void RunOnMainThread(@NonNull Runnable r) {
+        if (MainThreadId == android.os.Process.myTid()) r.run();
+        else DelayedExec.RunAfterDelayInMsec(r, 0);
+    }
     public static void ShowToast(String msg) {
         CTWarn(TAG, "showToast():" + msg);
-        R2CActivity activity = R2CActivity.getR2CActivity();
-        if (null != activity) activity.showToast(msg);
+        RunOnMainThread(() -> {
+            R2CActivity activity = R2CActivity.getR2CActivity();
+            if (null != activity) activity.showToast(msg);
+        });
     }
     public static void ShowToast(String msg, Exception e) {
         CTWarn(TAG, "showToast():" + msg, e);
-        msg = msg + "\n" + ExceptionToString(e);
-        R2CActivity activity = R2CActivity.getR2CActivity();
-        if (null != activity) activity.showToast(msg);
+        String toastMsg = msg + "\n" + ExceptionToString(e);
+        RunOnMainThread(() -> {
+            R2CActivity activity = R2CActivity.getR2CActivity();
+            if (null != activity) activity.showToast(toastMsg);
+        });
     }
 
     public static void readCredentialsFileContent(JSONObject json)
@@ -829,16 +970,12 @@ public class CaltopoClient implements CtDroneSpec.CtDroneSpecListener, CaltopoCl
     @NonNull
     public static CaltopoClient ClientForRemoteId(@NonNull String remoteId)
             throws RuntimeException {
-        if (null == ClientMap) {
-            ClientMap = new Hashtable<>(16);
-        }
         if (remoteId.isEmpty()) {
             throw new RuntimeException("CaltopoClient.ClientForRemoteId(): Invalid remoteId");
         }
         CaltopoClient client = ClientMap.get(remoteId);
         if (null == client) {
-            client = new CaltopoClient(remoteId);
-            ClientMap.put(remoteId, client);
+            client = ClientMap.computeIfAbsent(remoteId, CaltopoClient::new);
         }
         return client;
     }
@@ -883,7 +1020,7 @@ public class CaltopoClient implements CtDroneSpec.CtDroneSpecListener, CaltopoCl
     }
 
     @NonNull
-    private static ClientClassState GetState() {
+    private static synchronized ClientClassState GetState() {
         if (null == Ccstate) {
             ClientClassState ccs = RestoreState();
             if (null == ccs) ccs = new ClientClassState();
@@ -893,7 +1030,7 @@ public class CaltopoClient implements CtDroneSpec.CtDroneSpecListener, CaltopoCl
         return Ccstate;
     }
 
-    private static void ArchiveState(@NonNull String reason) {
+    private static synchronized void ArchiveState(@NonNull String reason) {
         if (null != Ccstate) try {
             Context ctxt = R2CActivity.getAppContext();
             if (null == ctxt) return;
@@ -1161,8 +1298,10 @@ public class CaltopoClient implements CtDroneSpec.CtDroneSpecListener, CaltopoCl
 
     public void publishLive(double lat, double lng, String groupId) {
         try {
-            if (null == ExecutorPool) {
-                ExecutorPool = Executors.newFixedThreadPool(ThreadPoolSize);
+            synchronized (CaltopoClient.class) {
+                if (null == ExecutorPool) {
+                    ExecutorPool = Executors.newFixedThreadPool(ThreadPoolSize);
+                }
             }
             ExecutorPool.submit(() -> bgPublishLive(groupId, droneSpec.getRemoteId(), lat, lng));
         } catch (Exception e) {
@@ -1182,7 +1321,11 @@ public class CaltopoClient implements CtDroneSpec.CtDroneSpecListener, CaltopoCl
             }
         }
     }
-    public void terminateTrack(String msg) {
+    /* newWaypoint() runs on this drone's CaltopoWorkers thread while checkIdleTime() and
+     * terminateTrack() can also be called on the main thread, so they're all synchronized
+     * on the client.  The idleTimeoutPoll DelayedExec is only ever touched on the main thread.
+     */
+    public synchronized void terminateTrack(String msg) {
         if (droneSpec.isActive()) {
             String trackLabel = droneSpec.trackLabel();
             WaypointTrack.ArchiveTrack(trackLabel);
@@ -1191,14 +1334,14 @@ public class CaltopoClient implements CtDroneSpec.CtDroneSpecListener, CaltopoCl
                 liveTrack.finishTrack(msg);
             }
             droneSpec.reset();
-            idleTimeoutPoll.stop();
+            RunOnMainThread(idleTimeoutPoll::stop);
         } else {
             CTDebug(TAG, "terminateTrack(): Ignoring inactive track.");
         }
     }
 
     // Make sure we catch idle drone tracks and archive them as soon as they are declared dormant.
-    public void checkIdleTime() {
+    public synchronized void checkIdleTime() {
         if ( null != liveTrack && liveTrack.isActive() ) {
             long maxIdleDelayInMilliseconds = GetNewTrackDelayInSeconds() * 1000;
             if (droneSpec.isActive()) {
@@ -1221,13 +1364,32 @@ public class CaltopoClient implements CtDroneSpec.CtDroneSpecListener, CaltopoCl
         }
     }
 
-    /** newWaypoint() - process a new waypoint from OpenDroneIdDataManager().
+    /* Hands the drone spec the reception stats the data manager keeps for this drone. */
+    public synchronized void setLinkStats(@Nullable LinkStats[] linkStats) {
+        droneSpec.setLinkStats(linkStats);
+    }
+
+    /** newWaypoint() - process a new waypoint reported by a peer R2C.
      *  Note that lat, lng, altitudeInMeters, and droneTimestampInSeconds are all values
      *  provided by the drone's remote id module and quality of measurement is going to
      *  vary from one source to the next.  Do a basic sanity check on anything before
      *  relying on it.
      */
-    public boolean newWaypoint(double lat, double lng, long altitudeInMeters, long droneTimestampInMilliseconds, CtDroneSpec.TransportTypeEnum transportType) {
+    public synchronized boolean newWaypoint(double lat, double lng, long altitudeInMeters, long droneTimestampInMilliseconds, CtDroneSpec.TransportTypeEnum transportType) {
+        if (!acceptFromSource(droneTimestampInMilliseconds, transportType)) return true;
+        return addWaypoint(lat, lng, altitudeInMeters, droneTimestampInMilliseconds, transportType);
+    }
+
+    // Only the drone's primary transport feeds the track, the others just fill in its gaps.
+    private boolean acceptFromSource(long droneTimestampInMilliseconds, CtDroneSpec.TransportTypeEnum transportType) {
+        if (sourceSelector.accept(droneSpec, transportType, droneTimestampInMilliseconds,
+                                  SystemClock.elapsedRealtime()))
+            return true;
+        droneSpec.bumpTransportCount(transportType);
+        return false;
+    }
+
+    private boolean addWaypoint(double lat, double lng, long altitudeInMeters, long droneTimestampInMilliseconds, CtDroneSpec.TransportTypeEnum transportType) {
         boolean useDirectFlag = GetUseDirectFlag();
 
         if (droneSpec.isActive() && MapStatusChangedFlag) {
@@ -1263,7 +1425,7 @@ public class CaltopoClient implements CtDroneSpec.CtDroneSpecListener, CaltopoCl
 
                 if (null == MyCaltopoClientMap || MapStatus == CaltopoClientMap.MapStatusListener.mapStatus.down) {
                     if (!WarnConnectingToMapFlag) {
-                        ConnectToMap();
+                        RunOnMainThread(CaltopoClient::ConnectToMap);
                         ShowToast("Connecting to map...");
                         WarnConnectingToMapFlag = true;
                     }
@@ -1283,10 +1445,12 @@ public class CaltopoClient implements CtDroneSpec.CtDroneSpecListener, CaltopoCl
                 }
 
                 // Use the idleTimeoutPoll to identify dead tracks.
-                if (!idleTimeoutPoll.isRunning()) {
-                    idleTimeoutPoll.start(this::checkIdleTime,
-                            GetNewTrackDelayInSeconds() * 1000, 0);
-                }
+                RunOnMainThread(() -> {
+                    if (!idleTimeoutPoll.isRunning()) {
+                        idleTimeoutPoll.start(this::checkIdleTime,
+                                GetNewTrackDelayInSeconds() * 1000, 0);
+                    }
+                });
             } else {
                 // FIXME: This tries to publish to a LiveTrack created in Caltopo by someone...
                 try {
@@ -22,10 +22,11 @@ import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Locale;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 /** CaltopoClientMap class
  *   Support bringing up the map session and creating the drone track folders (if not
@@ -97,11 +98,11 @@ public class CaltopoClientMap implements R2CRest.R2CListener {
     private final Hashtable<String, CaltopoLiveTrack> liveTracksById = new Hashtable<>();
 
     // All liveTracks, including those not yet/ever writing to the map:
-    private final ArrayList<CaltopoLiveTrack> liveTracks = new ArrayList<>(16);
+    private final CopyOnWriteArrayList<CaltopoLiveTrack> liveTracks = new CopyOnWriteArrayList<>();
 
     private final ArrayList<JSONObject> rogueFeaturesPendingDeletes = new ArrayList<>();
 
-    private static HashSet<MapStatusListener> MapListeners = new HashSet<>();
+    private static final CopyOnWriteArraySet<MapStatusListener> MapListeners = new CopyOnWriteArraySet<>();
 
     private JSONArray myLiveTracksInThisMap;   // Actual 'LiveTrack' objects in the current map
     public CaltopoClientMap(@NonNull CaltopoSessionConfig config, @NonNull String mapIdIn, @NonNull String folderName)
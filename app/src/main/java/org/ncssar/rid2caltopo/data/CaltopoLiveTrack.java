@@ -7,8 +7,8 @@ import org.json.JSONObject;
 import org.ncssar.rid2caltopo.app.R2CActivity;
 import org.opendroneid.android.data.Util;
 
-import java.util.Hashtable;
 import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.ncssar.rid2caltopo.data.CaltopoClient.CTDebug;
 import static org.ncssar.rid2caltopo.data.CaltopoClient.CTError;
@@ -37,7 +37,7 @@ import java.util.LinkedList;
 public class CaltopoLiveTrack implements CaltopoClientMap.MapStatusListener {
     private static final String TAG = "CaltopoLiveTrack";
     private static final Util.SimpleMovingAverage CaltopoRttInMsec = new Util.SimpleMovingAverage(10);
-    private static final Hashtable<String, CaltopoLiveTrack> LiveTrackByRemoteId = new Hashtable<>(16);
+    private static final ConcurrentHashMap<String, CaltopoLiveTrack> LiveTrackByRemoteId = new ConcurrentHashMap<>(16);
     private CaltopoOp startLiveTrackOp;
     private CaltopoOp renameTrackOp;
     private CaltopoOp liveTrackOp;
@@ -84,7 +84,7 @@ public class CaltopoLiveTrack implements CaltopoClientMap.MapStatusListener {
 
     /*
      */
-    public void startNewTrack(double lat, double lng, long droneTimestampInMsec) {
+    public synchronized void startNewTrack(double lat, double lng, long droneTimestampInMsec) {
         if (shuttingDown) return;
 
         double[] point = {lat, lng, (double)droneTimestampInMsec};
@@ -111,7 +111,7 @@ public class CaltopoLiveTrack implements CaltopoClientMap.MapStatusListener {
         }
     }
 
-    public void mapStatusUpdate(CaltopoClientMap map, CaltopoClientMap.MapStatusListener.mapStatus mapStatusIn) {
+    public synchronized void mapStatusUpdate(CaltopoClientMap map, CaltopoClientMap.MapStatusListener.mapStatus mapStatusIn) {
         if (map == myMap) {
             mapStatus = mapStatusIn;
             if (mapStatusIn == CaltopoClientMap.MapStatusListener.mapStatus.up) {
@@ -120,12 +120,12 @@ public class CaltopoLiveTrack implements CaltopoClientMap.MapStatusListener {
         }
     }
 
-    public boolean publishingLocally() {
+    public synchronized boolean publishingLocally() {
         return (mapStatus == CaltopoClientMap.MapStatusListener.mapStatus.up && r2cStatus == okToPublishLocally);
     }
 
     /* Return -1 if no corresponding point */
-    public long getFirstTimestamp() {
+    public synchronized long getFirstTimestamp() {
         if (linePoints.isEmpty()) return -1;
         double[] point = linePoints.getFirst();
         return (long)point[2];
@@ -135,7 +135,7 @@ public class CaltopoLiveTrack implements CaltopoClientMap.MapStatusListener {
         return LiveTrackByRemoteId.get(remoteId);
     }
 
-    public void shutdown(long maxWaitInMilliseconds) {
+    public synchronized void shutdown(long maxWaitInMilliseconds) {
         shuttingDown = true;
         active = false;
         archiveTrackOnCaltopo(maxWaitInMilliseconds);
@@ -148,7 +148,7 @@ public class CaltopoLiveTrack implements CaltopoClientMap.MapStatusListener {
      * @param caltopoTrackLabel Usually of the form <label>_datetimestamp,
      *                          so look at everything before the '_'.
      */
-    public void checkCaltopoTrackLabel(@NonNull String caltopoTrackLabel) {
+    public synchronized void checkCaltopoTrackLabel(@NonNull String caltopoTrackLabel) {
         String trackLabel = droneSpec.trackLabel();
         if (trackLabel.equals(caltopoTrackLabel)) return; // no change.
         String newLabel = caltopoTrackLabel;
@@ -165,7 +165,7 @@ public class CaltopoLiveTrack implements CaltopoClientMap.MapStatusListener {
 
     /**  Archive this track segment on Caltopo if we're the owner.
      */
-    public void archiveTrackOnCaltopo( long maxWaitInMilliseconds) {
+    public synchronized void archiveTrackOnCaltopo( long maxWaitInMilliseconds) {
         if (r2cStatus != okToPublishLocally) {
             // We aren't responsible for writing this drone's tracks to caltopo
             CTDebug(TAG, "archiveTrackOnCaltopo(): attempt to archive a track that is owned by a remote R2C ignored.");
@@ -226,7 +226,7 @@ public class CaltopoLiveTrack implements CaltopoClientMap.MapStatusListener {
         return "<not active>";
     }
 
-    public void renameTrackCompleted() {
+    public synchronized void renameTrackCompleted() {
         if (renameTrackOp.fail()) {
             CTError(TAG, "renameTrackCompleted(): Failed to rename LiveTrack: " + renameTrackOp.responseString());
         } else {
@@ -234,7 +234,7 @@ public class CaltopoLiveTrack implements CaltopoClientMap.MapStatusListener {
         }
     }
 
-    public void renameTrack() {
+    public synchronized void renameTrack() {
         // Just edit the current live track - replacing the title.
         // N.B. must continue to use the original track name when publishing tracks...
         if (!active || null == startLiveTrackOp) {
@@ -260,7 +260,7 @@ public class CaltopoLiveTrack implements CaltopoClientMap.MapStatusListener {
         }
     }
 
-    private void startNewTrack() {
+    private synchronized void startNewTrack() {
         if (null == startLiveTrackOp && okToPublishLocally == r2cStatus) {
             liveTrackId = null;
             liveTrackOp = null;
@@ -278,7 +278,7 @@ public class CaltopoLiveTrack implements CaltopoClientMap.MapStatusListener {
         }
     }
 
-    public void finishTrack(@NonNull String reason) {
+    public synchronized void finishTrack(@NonNull String reason) {
         if (r2cStatus == okToPublishLocally) R2CRest.SendDropDrone(myRemoteId);
         CTDebug(TAG, "finishTrack(): " + reason);
         if (active && null != liveTrackId) try {
@@ -291,7 +291,7 @@ public class CaltopoLiveTrack implements CaltopoClientMap.MapStatusListener {
 
     public boolean isActive() {return active; }
 
-    public void updateStatus(R2CRest.R2CRespEnum status) {
+    public synchronized void updateStatus(R2CRest.R2CRespEnum status) {
         if (shuttingDown) return;
         CTDebug(TAG, String.format(Locale.US,
                 "updateStatus() - changing from '%s' to '%s'", r2cStatus.toString(), status.toString()));
@@ -336,7 +336,7 @@ public class CaltopoLiveTrack implements CaltopoClientMap.MapStatusListener {
         r2cStatus = unknown;
     }
 
-    private void startLiveTrackComplete() {
+    private synchronized void startLiveTrackComplete() {
         String trackLabel = droneSpec.trackLabel();
         if (startLiveTrackOp.fail()) {
             CTError(TAG, String.format(Locale.US, "Not able to open LiveTrack for:'%s-%s':\n  %s",
@@ -353,7 +353,7 @@ public class CaltopoLiveTrack implements CaltopoClientMap.MapStatusListener {
         forwardNextWaypoint();
     }
 
-    public void publishDirect(double lat, double lng, long altitudeInMeters, long droneTimestampInMillisec) {
+    public synchronized void publishDirect(double lat, double lng, long altitudeInMeters, long droneTimestampInMillisec) {
         double[] point = {lat, lng, (double)droneTimestampInMillisec};
         linePoints.add(point);
         CTDebug(TAG, String.format(Locale.US,
@@ -385,7 +385,7 @@ public class CaltopoLiveTrack implements CaltopoClientMap.MapStatusListener {
     /** forwardNextWaypoint():
      *  Pull waypoints off the queue and forward to Caltopo
      */
-    public void forwardNextWaypoint() {
+    public synchronized void forwardNextWaypoint() {
         if (shuttingDown || !active) {
             CTDebug(TAG, "forwardNextWaypoint(): no longer active - stopping.");
             return; // signals for send no more waypoints.
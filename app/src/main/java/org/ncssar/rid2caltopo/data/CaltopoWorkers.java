@@ -0,0 +1,55 @@
+package org.ncssar.rid2caltopo.data;
+
+import static org.ncssar.rid2caltopo.data.CaltopoClient.CTDebug;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+
+/** CaltopoWorkers
+ * Runs the per-drone waypoint processing (CaltopoClient.newWaypoint() and everything downstream
+ * of it) on a small fixed set of worker threads, sharded by remote id.  All of a drone's work is
+ * posted to the same worker, so it is handled strictly in the order it was received, while
+ * different drones are handled in parallel.  Anything that has to touch the UI or the
+ * DelayedExec timers is handed back to the main thread with CaltopoClient.RunOnMainThread().
+ */
+public class CaltopoWorkers {
+    private static final String TAG = "CaltopoWorkers";
+    private static final int MaxWorkers = 4;
+    private static volatile Handler[] Workers;
+
+    @NonNull
+    private static Handler[] GetWorkers() {
+        Handler[] workers = Workers;
+        if (null != workers) return workers;
+        synchronized (CaltopoWorkers.class) {
+            if (null == Workers) {
+                // Leave a core for the main and ingest threads.
+                int count = Math.max(1, Math.min(MaxWorkers, Runtime.getRuntime().availableProcessors() - 1));
+                workers = new Handler[count];
+                for (int i = 0; i < count; i++) {
+                    HandlerThread thread = new HandlerThread("CaltopoWorker-" + i);
+                    thread.start();
+                    workers[i] = new Handler(thread.getLooper());
+                }
+                Workers = workers;
+                CTDebug(TAG, String.format(Locale.US, "GetWorkers(): started %d workers.", count));
+            }
+            return Workers;
+        }
+    }
+
+    /* The worker a drone's work goes to; always the same one for the same remote id. */
+    static int ShardFor(@NonNull String remoteId, int workerCount) {
+        return (remoteId.hashCode() & 0x7fffffff) % workerCount;
+    }
+
+    /* Any thread.  remoteId should be the sanitized id the drone's CaltopoClient is keyed by. */
+    public static void Post(@NonNull String remoteId, @NonNull Runnable work) {
+        Handler[] workers = GetWorkers();
+        workers[ShardFor(remoteId, workers.length)].post(work);
+    }
+}
@@ -16,6 +16,7 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import org.json.JSONObject;
+import org.opendroneid.android.data.LinkStats;
 import org.opendroneid.android.data.Util;
 
 import java.io.IOException;
@@ -23,6 +24,7 @@ import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.List;
 import java.util.Locale;
+import java.util.regex.Pattern;
 
 public class CtDroneSpec implements Comparable<CtDroneSpec>, Serializable {
     public enum TransportTypeEnum {
@@ -45,6 +47,8 @@ public class CtDroneSpec implements Comparable<CtDroneSpec>, Serializable {
     private static final long serialVersionUID = 2L;
     private static final String TAG = "CtDroneSpec";
     private static final String EMPTY_STRING = "";
+    private static final Pattern REMOTE_ID_INVALID_CHARS = Pattern.compile("[^A-Z0-9]");
+    private static final Pattern MAPPED_ID_INVALID_CHARS = Pattern.compile("[^a-zA-Z0-9]");
 
     @NonNull private String remoteId;
     private String mappedId;   /* The track label prefix assigned to drone */
@@ -62,7 +66,11 @@ public class CtDroneSpec implements Comparable<CtDroneSpec>, Serializable {
     private transient String trackLabel;
     public transient double lastLat;
     public transient double lastLng;
+    private transient double cosLastLat = 1.0; // cos(lastLat), see checkNewWaypoint()
+    private static final double EARTH_RADIUS_IN_METERS = 6371008.8;
+    static final double GATE_BAND = 0.02;
     private transient int goodCount; // only the number of good waypoints.
+    private transient volatile LinkStats[] linkStats; // by TransportTypeEnum ordinal, see setLinkStats()
 
     @NonNull
     public String trackLabel() { return trackLabel;}
@@ -88,6 +96,7 @@ public class CtDroneSpec implements Comparable<CtDroneSpec>, Serializable {
         trackLabel = EMPTY_STRING;
         flightSimpleTimer = new SimpleTimer();
         transportCount = new int[TransportTypeEnum.values().length];
+        cosLastLat = 1.0;
     }
 
     public void bumpTransportCount(TransportTypeEnum tt) {
@@ -100,6 +109,22 @@ public class CtDroneSpec implements Comparable<CtDroneSpec>, Serializable {
         return transportCount[tt.ordinal()];
     }
 
+    /* The reception stats the data manager keeps for this drone, by transport ordinal. */
+    public void setLinkStats(@Nullable LinkStats[] linkStats) { this.linkStats = linkStats; }
+
+    @Nullable
+    public LinkStats getLinkStats(TransportTypeEnum tt) {
+        LinkStats[] stats = linkStats;
+        return null == stats ? null : stats[tt.ordinal()];
+    }
+
+    /* Waypoint count for a transport, followed by the loss on it once anything was received. */
+    public String getTransportCountAsString(TransportTypeEnum tt) {
+        LinkStats stats = getLinkStats(tt);
+        if (null == stats || 0 == stats.getReceived()) return Integer.toString(getTransportCount(tt));
+        return String.format(Locale.US, "%d %.0f%%", getTransportCount(tt), stats.getLossPercent());
+    }
+
     public void reset() { trackLabel = EMPTY_STRING; }
 
     public void start() {
@@ -131,8 +156,19 @@ public class CtDroneSpec implements Comparable<CtDroneSpec>, Serializable {
         throw new RuntimeException("Use one of the other constructor methods.");
     }
 
+    /** SanitizedRemoteId()
+     *
+     * @param rawId remote id as received from the drone.
+     * @return the id with anything other than upper case letters and digits removed,
+     *         which is the form used to key drone specs and Caltopo clients.
+     */
+    @NonNull
+    public static String SanitizedRemoteId(@NonNull String rawId) {
+        return REMOTE_ID_INVALID_CHARS.matcher(rawId).replaceAll("");
+    }
+
     public CtDroneSpec(@NonNull String remoteId) throws RuntimeException {
-        String idStr = remoteId.replaceAll("[^A-Z0-9]", "");
+        String idStr = SanitizedRemoteId(remoteId);
         if (idStr.isEmpty()) {
             throw new RuntimeException("Invalid required remoteId spec.");
         }
@@ -215,15 +251,41 @@ public class CtDroneSpec implements Comparable<CtDroneSpec>, Serializable {
         }
 
         final float feetPerMeter = 3.28084f;
-        float[] dbResult = {Float.NaN};
-        Location.distanceBetween(lat, lng, lastLat, lastLng, dbResult);
-        double distanceInFeet = dbResult[0] * feetPerMeter;
-        if (distanceInFeet < CaltopoClient.GetMinDistanceInFeet()) return false;
+        double minDistanceInMeters = CaltopoClient.GetMinDistanceInFeet() / feetPerMeter;
+        double minSquared = minDistanceInMeters * minDistanceInMeters;
+        double distanceSquared = EquirectangularSquaredInMeters(lat, lng, lastLat, lastLng, cosLastLat);
+        double distanceInMeters;
+        if (distanceSquared < minSquared * (1.0 - GATE_BAND)) {
+            return false;
+        } else if (distanceSquared > minSquared * (1.0 + GATE_BAND)) {
+            distanceInMeters = Math.sqrt(distanceSquared);
+        } else {
+            // Too close to the threshold for the approximation to decide, use the geodesic.
+            float[] dbResult = {Float.NaN};
+            Location.distanceBetween(lat, lng, lastLat, lastLng, dbResult);
+            if (dbResult[0] < minDistanceInMeters) return false;
+            distanceInMeters = dbResult[0];
+        }
         lastLat = lat; lastLng = lng; goodCount++;
-        CTInfo(TAG, String.format(Locale.US, "Distance in feet: %.3f", distanceInFeet));
+        cosLastLat = Math.cos(Math.toRadians(lat));
+        CTInfo(TAG, String.format(Locale.US, "Distance in feet: %.3f", distanceInMeters * feetPerMeter));
         return true;
     }
 
+    /* Over the few feet checkNewWaypoint() cares about the earth is flat enough that the
+     * equirectangular distance is within GATE_BAND (as a fraction of the squared distance) of
+     * the geodesic, so only points inside that band need Location.distanceBetween().
+     */
+    static double EquirectangularSquaredInMeters(double lat, double lng,
+                                                 double lastLat, double lastLng, double cosLastLat) {
+        double dLng = lng - lastLng;
+        if (dLng > 180.0) dLng -= 360.0;
+        else if (dLng < -180.0) dLng += 360.0;
+        double x = Math.toRadians(dLng) * cosLastLat;
+        double y = Math.toRadians(lat - lastLat);
+        return (x * x + y * y) * EARTH_RADIUS_IN_METERS * EARTH_RADIUS_IN_METERS;
+    }
+
     /** idleTimeInMsec()
      *
      * @param currentTimeInMsec current time in milliseconds.
@@ -235,7 +297,7 @@ public class CtDroneSpec implements Comparable<CtDroneSpec>, Serializable {
 
     public String setMappedId(@NonNull String newMappedId) {
         String oldString= mappedId;
-        String newStr = newMappedId.replaceAll("[^a-zA-Z0-9]", "");
+        String newStr = MAPPED_ID_INVALID_CHARS.matcher(newMappedId).replaceAll("");
         if (!newStr.isEmpty() && !newStr.equals(oldString)) {
             mappedId = newStr;
             if (null != ownerR2c) {
@@ -6,6 +6,7 @@ import static org.ncssar.rid2caltopo.data.CaltopoClient.ShowToast;
 
 import org.ncssar.rid2caltopo.app.R2CActivity;
 import org.ncssar.rid2caltopo.app.ScanningService;
+import org.opendroneid.android.bluetooth.BluetoothScanner;
 import org.opendroneid.android.data.Util;
 
 import java.net.NetworkInterface;
@@ -849,10 +850,16 @@ public class R2CRest implements WsPipe.WsMsgListener {
         switch (payload.optString("type")) {
             case "hello": handleHello(seqnum, payload); break;
             case "leaving": handleLeaving(seqnum); break;
-            case "add-drone": handleAddDrone(seqnum, payload); break;
+            case "add-drone":
+                BluetoothScanner.PeerReportedDrone();
+                handleAddDrone(seqnum, payload);
+                break;
             case "drop-drone": handleDropDrone(seqnum, payload); break;
             case "name-change": handleNameChange(seqnum, payload); break;
-            case "seen": handleSeen(seqnum, payload); break;
+            case "seen":
+                BluetoothScanner.PeerReportedDrone();
+                handleSeen(seqnum, payload);
+                break;
             case "drone-status": handleStatus(seqnum, payload); break;
             default: {
                 wsPipe.sendResponse(seqnum, errorResponsePayload(
@@ -0,0 +1,93 @@
+package org.ncssar.rid2caltopo.data;
+
+import static org.ncssar.rid2caltopo.data.CaltopoClient.CTDebug;
+
+import androidx.annotation.NonNull;
+
+import org.opendroneid.android.data.LinkStats;
+
+import java.util.Locale;
+
+/** WaypointSourceSelector
+ * Picks which transport a drone's track follows when it is heard on several at once (BT4, BT5,
+ * WiFi, NaN and R2C peers).  Each transport is scored on its loss rate and on how often its
+ * timestamps went backwards; the best fresh one is the primary, and the others are only used to
+ * fill in when the primary has gone quiet for a while.  Nothing older than the last accepted
+ * waypoint is accepted from any transport, so differently delayed sources can't interleave into
+ * a zig-zag.  Used under the owning CaltopoClient's lock.
+ */
+final class WaypointSourceSelector {
+    private static final String TAG = "WaypointSourceSelector";
+    // A transport not heard from for this long can't be, or stay, the primary.
+    private static final long STALE_MSEC = 3000;
+    // Another transport fills in once the primary hasn't given a waypoint for this long.
+    private static final long FILL_IN_GAP_MSEC = 1500;
+    // How much better another transport has to score before the primary is switched to it.
+    private static final double SWITCH_MARGIN = 10.0;
+    // Score per unit of the (0..1) rate at which a transport's timestamps go backwards.
+    private static final double BACKWARDS_WEIGHT = 100.0;
+    private static final double ALPHA = 0.125;
+
+    private static final CtDroneSpec.TransportTypeEnum[] Transports = CtDroneSpec.TransportTypeEnum.values();
+
+    private final long[] lastHeardMsec = new long[Transports.length];
+    private final long[] lastTimestampMsec = new long[Transports.length];
+    private final double[] backwardsEwma = new double[Transports.length];
+    private CtDroneSpec.TransportTypeEnum primary;
+    private long lastAcceptedMsec;
+    private long lastAcceptedTimestampMsec;
+
+    /* Returns true if a waypoint stamped droneTimestampInMsec (0 if unknown) arriving on tt at
+     * nowMsec should go on to checkNewWaypoint().
+     */
+    boolean accept(@NonNull CtDroneSpec droneSpec, @NonNull CtDroneSpec.TransportTypeEnum tt,
+                   long droneTimestampInMsec, long nowMsec) {
+        int t = tt.ordinal();
+        if (0 != droneTimestampInMsec) {
+            boolean backwards = 0 != lastTimestampMsec[t] && droneTimestampInMsec < lastTimestampMsec[t];
+            backwardsEwma[t] += ALPHA * ((backwards ? 1.0 : 0.0) - backwardsEwma[t]);
+            lastTimestampMsec[t] = droneTimestampInMsec;
+        }
+        lastHeardMsec[t] = nowMsec;
+
+        choosePrimary(droneSpec, nowMsec);
+        boolean fromPrimary = tt == primary;
+        if (!fromPrimary && nowMsec - lastAcceptedMsec < FILL_IN_GAP_MSEC)
+            return false;
+        if (0 != droneTimestampInMsec && droneTimestampInMsec <= lastAcceptedTimestampMsec)
+            return false;
+        lastAcceptedMsec = nowMsec;
+        if (0 != droneTimestampInMsec) lastAcceptedTimestampMsec = droneTimestampInMsec;
+        return true;
+    }
+
+    private double score(@NonNull CtDroneSpec droneSpec, int t) {
+        LinkStats stats = droneSpec.getLinkStats(Transports[t]);
+        double loss = null == stats ? 0.0 : stats.getLossPercent();
+        return loss + BACKWARDS_WEIGHT * backwardsEwma[t];
+    }
+
+    private void choosePrimary(@NonNull CtDroneSpec droneSpec, long nowMsec) {
+        int best = -1;
+        double bestScore = Double.MAX_VALUE;
+        for (int t = 0; t < Transports.length; t++) {
+            if (0 == lastHeardMsec[t] || nowMsec - lastHeardMsec[t] > STALE_MSEC) continue;
+            double s = score(droneSpec, t);
+            if (s < bestScore) {
+                best = t;
+                bestScore = s;
+            }
+        }
+        if (best < 0) return;
+        if (null != primary) {
+            int p = primary.ordinal();
+            boolean primaryFresh = nowMsec - lastHeardMsec[p] <= STALE_MSEC;
+            if (primaryFresh && score(droneSpec, p) <= bestScore + SWITCH_MARGIN) return;
+        }
+        if (Transports[best] != primary) {
+            CTDebug(TAG, String.format(Locale.US, "%s: primary source %s -> %s (score %.1f)",
+                    droneSpec.getRemoteId(), primary, Transports[best], bestScore));
+            primary = Transports[best];
+        }
+    }
+}
@@ -10,10 +10,11 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Date;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import android.content.ContentResolver;
 import android.content.Context;
@@ -65,11 +66,12 @@ import androidx.documentfile.provider.DocumentFile;
 
 public class WaypointTrack {
 
-	public static int WaypointCount = 0;
+	public static final AtomicInteger WaypointCount = new AtomicInteger();
 	private static final String TAG = "WaypointTrack";
 
 	// map trackLabel to WaypointTrack.
-	public static HashMap<String, WaypointTrack> TrackMap = new HashMap<>();
+	// Tracks are added from the CaltopoWorkers threads and archived from the main thread.
+	public static final ConcurrentHashMap<String, WaypointTrack> TrackMap = new ConcurrentHashMap<>();
 
 	public JSONArray coordinates;
 	public String trackLabel;
@@ -91,11 +93,7 @@ public class WaypointTrack {
 	public static void AddWaypointForTrack(@NonNull CtDroneSpec droneSpec, double lat, double lng,
 										   long altAboveLaunchInMeters, long timestampInMillisec) {
 		String trackLabel = droneSpec.trackLabel();
-		WaypointTrack track = TrackMap.get(trackLabel);
-		if (null == track) {
-			track = new WaypointTrack(trackLabel);
-			TrackMap.put(trackLabel, track);
-		}
+		WaypointTrack track = TrackMap.computeIfAbsent(trackLabel, WaypointTrack::new);
 		track.addWaypoint(lat, lng, altAboveLaunchInMeters, timestampInMillisec);
 	}
 
@@ -105,7 +103,7 @@ public class WaypointTrack {
 	}
 
 	public static void ArchiveTracks() {
-		if (0 == WaypointCount) {
+		if (0 == WaypointCount.get()) {
 			CTDebug(TAG, "ArchiveTracks(): no waypoints recorded");
 			return;
 		}
@@ -132,7 +130,7 @@ public class WaypointTrack {
 		}
 	}
 
-	public void archive() {
+	public synchronized void archive() {
 		long numCoords = coordinates.length();
 		if (numCoords > 0 && null == outputStream) {
 			CTDebug(TAG, "archive(): outputStream already archived.");
@@ -176,7 +174,7 @@ public class WaypointTrack {
 	}
 
 	// returns true if waypoint added
-	public void addWaypoint(double lat, double lng,
+	public synchronized void addWaypoint(double lat, double lng,
 							long altInMeters, long timestampInMillisec) {
 
 		JSONArray ja = new JSONArray();
@@ -185,7 +183,7 @@ public class WaypointTrack {
 		ja.put(String.format(Locale.US, "%d", altInMeters));
 		ja.put(String.format(Locale.US, "%d", timestampInMillisec));
 		coordinates.put(ja);
-		WaypointCount++;
+		WaypointCount.incrementAndGet();
 		if (null == outputStream) setupOutputStream();
 	}
 }
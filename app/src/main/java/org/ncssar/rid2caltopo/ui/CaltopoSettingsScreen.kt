@@ -19,6 +19,11 @@ fun CaltopoSettingsScreen(
     val minDistance by settingsViewModel.minDistance.collectAsState()
     val newTrackDelay by settingsViewModel.newTrackDelay.collectAsState()
     val useDirect by settingsViewModel.useDirect.collectAsState()
+    val bleBatchMode by settingsViewModel.bleBatchMode.collectAsState()
+    val bleReportDelay by settingsViewModel.bleReportDelay.collectAsState()
+    val bleBatchSize by settingsViewModel.bleBatchSize.collectAsState()
+    val publishInterval by settingsViewModel.publishInterval.collectAsState()
+    val bleQuietPeriod by settingsViewModel.bleQuietPeriod.collectAsState()
 
     Dialog(onDismissRequest = onDismiss) {
         Card {
@@ -59,6 +64,36 @@ fun CaltopoSettingsScreen(
                     label = { Text("New Track Delay (s)") }
                 )
 
+                Row(verticalAlignment = Alignment.CenterVertically) {
+                    Text("BLE Reports:")
+                    Switch(
+                        checked = bleBatchMode,
+                        onCheckedChange = { settingsViewModel.onBleBatchModeChanged(it) }
+                    )
+                    Text(if (bleBatchMode) "Batched" else "Immediate")
+                }
+                OutlinedTextField(
+                    value = bleReportDelay,
+                    onValueChange = { settingsViewModel.onBleReportDelayChanged(it) },
+                    label = { Text("BLE Report Delay (ms)") },
+                    enabled = bleBatchMode
+                )
+                OutlinedTextField(
+                    value = bleBatchSize,
+                    onValueChange = { settingsViewModel.onBleBatchSizeChanged(it) },
+                    label = { Text("Batch Size") }
+                )
+                OutlinedTextField(
+                    value = publishInterval,
+                    onValueChange = { settingsViewModel.onPublishIntervalChanged(it) },
+                    label = { Text("Display Refresh (ms)") }
+                )
+                OutlinedTextField(
+                    value = bleQuietPeriod,
+                    onValueChange = { settingsViewModel.onBleQuietPeriodChanged(it) },
+                    label = { Text("BLE Quiet Period (s)") }
+                )
+
                 Spacer(modifier = Modifier.height(16.dp))
 
                 Row {
@@ -24,6 +24,21 @@ class CaltopoSettingsViewModel : ViewModel(), CaltopoClient.ClientSettingsListen
     private val _useDirect = MutableStateFlow(CaltopoClient.GetUseDirectFlag())
     val useDirect = _useDirect.asStateFlow()
 
+    private val _bleBatchMode = MutableStateFlow(CaltopoClient.GetBleBatchMode())
+    val bleBatchMode = _bleBatchMode.asStateFlow()
+
+    private val _bleReportDelay = MutableStateFlow(CaltopoClient.GetBleReportDelayInMsec().toString())
+    val bleReportDelay = _bleReportDelay.asStateFlow()
+
+    private val _bleBatchSize = MutableStateFlow(CaltopoClient.GetBleBatchSize().toString())
+    val bleBatchSize = _bleBatchSize.asStateFlow()
+
+    private val _publishInterval = MutableStateFlow(CaltopoClient.GetAircraftPublishIntervalInMsec().toString())
+    val publishInterval = _publishInterval.asStateFlow()
+
+    private val _bleQuietPeriod = MutableStateFlow(CaltopoClient.GetBleQuietPeriodInSeconds().toString())
+    val bleQuietPeriod = _bleQuietPeriod.asStateFlow()
+
     init {
         CaltopoClient.SetSettingsListener(this);
         settingsChanged(); // load initial values.
@@ -35,6 +50,11 @@ class CaltopoSettingsViewModel : ViewModel(), CaltopoClient.ClientSettingsListen
         _newTrackDelay.value = CaltopoClient.GetNewTrackDelayInSeconds().toString()
         _minDistance.value = CaltopoClient.GetMinDistanceInFeet().toString()
         _mapId.value = CaltopoClient.GetMapId()
+        _bleBatchMode.value = CaltopoClient.GetBleBatchMode()
+        _bleReportDelay.value = CaltopoClient.GetBleReportDelayInMsec().toString()
+        _bleBatchSize.value = CaltopoClient.GetBleBatchSize().toString()
+        _publishInterval.value = CaltopoClient.GetAircraftPublishIntervalInMsec().toString()
+        _bleQuietPeriod.value = CaltopoClient.GetBleQuietPeriodInSeconds().toString()
     }
 
     // --- UI Event Handlers --- //
@@ -60,11 +80,36 @@ class CaltopoSettingsViewModel : ViewModel(), CaltopoClient.ClientSettingsListen
         _useDirect.value = isDirect
     }
 
+    fun onBleBatchModeChanged(isBatched: Boolean) {
+        _bleBatchMode.value = isBatched
+    }
+
+    fun onBleReportDelayChanged(newDelay: String) {
+        _bleReportDelay.value = newDelay
+    }
+
+    fun onBleBatchSizeChanged(newBatchSize: String) {
+        _bleBatchSize.value = newBatchSize
+    }
+
+    fun onPublishIntervalChanged(newInterval: String) {
+        _publishInterval.value = newInterval
+    }
+
+    fun onBleQuietPeriodChanged(newQuietPeriod: String) {
+        _bleQuietPeriod.value = newQuietPeriod
+    }
+
     fun saveSettings() {
         CaltopoClient.SetGroupId(_groupId.value)
         CaltopoClient.SetMapId(_mapId.value)
         _minDistance.value.toLongOrNull()?.let { CaltopoClient.setMinDistanceInFeet(it) }
         _newTrackDelay.value.toLongOrNull()?.let { CaltopoClient.SetNewTrackDelayInSeconds(it) }
         CaltopoClient.SetUseDirect(_useDirect.value)
+        CaltopoClient.SetBleBatchMode(_bleBatchMode.value)
+        _bleReportDelay.value.toLongOrNull()?.let { CaltopoClient.SetBleReportDelayInMsec(it) }
+        _bleBatchSize.value.toIntOrNull()?.let { CaltopoClient.SetBleBatchSize(it) }
+        _publishInterval.value.toLongOrNull()?.let { CaltopoClient.SetAircraftPublishIntervalInMsec(it) }
+        _bleQuietPeriod.value.toLongOrNull()?.let { CaltopoClient.SetBleQuietPeriodInSeconds(it) }
     }
 }
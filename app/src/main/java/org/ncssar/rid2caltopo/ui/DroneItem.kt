@@ -138,7 +138,7 @@ fun DroneItem(drone: CtDroneSpec, onMappedIdChange: (String) -> Unit) {
             ) {
                 Text(
                     modifier = Modifier.align(Alignment.End),
-                    text = "${drone.getTransportCount(CtDroneSpec.TransportTypeEnum.BT4)}",
+                    text = drone.getTransportCountAsString(CtDroneSpec.TransportTypeEnum.BT4),
                     textAlign = TextAlign.Right)
             }
             Column(
@@ -151,7 +151,7 @@ fun DroneItem(drone: CtDroneSpec, onMappedIdChange: (String) -> Unit) {
             ) {
                 Text(
                     modifier = Modifier.align(Alignment.End),
-                    text = "${drone.getTransportCount(CtDroneSpec.TransportTypeEnum.BT5)}",
+                    text = drone.getTransportCountAsString(CtDroneSpec.TransportTypeEnum.BT5),
                     textAlign = TextAlign.Right)
             }
             Column(
@@ -164,7 +164,7 @@ fun DroneItem(drone: CtDroneSpec, onMappedIdChange: (String) -> Unit) {
             ) {
                 Text(
                     modifier = Modifier.align(Alignment.End),
-                    text = "${drone.getTransportCount(CtDroneSpec.TransportTypeEnum.WIFI)}",
+                    text = drone.getTransportCountAsString(CtDroneSpec.TransportTypeEnum.WIFI),
                     textAlign = TextAlign.Right)
             }
             Column(
@@ -177,7 +177,7 @@ fun DroneItem(drone: CtDroneSpec, onMappedIdChange: (String) -> Unit) {
             ) {
                 Text(
                     modifier = Modifier.align(Alignment.End),
-                    text = "${drone.getTransportCount(CtDroneSpec.TransportTypeEnum.WNAN)}",
+                    text = drone.getTransportCountAsString(CtDroneSpec.TransportTypeEnum.WNAN),
                     textAlign = TextAlign.Right)
             }
             Column(
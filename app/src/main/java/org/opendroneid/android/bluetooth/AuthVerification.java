@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2025 Ken Taylor
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+package org.opendroneid.android.bluetooth;
+
+import androidx.annotation.NonNull;
+
+import org.ncssar.rid2caltopo.data.CaltopoClient;
+import org.opendroneid.android.data.AircraftObject;
+import org.opendroneid.android.data.AuthenticationData;
+import org.opendroneid.android.data.AuthenticationData.VerificationEnum;
+
+import java.util.Locale;
+
+/** AuthVerification
+ * Checks each complete authentication set an aircraft sends.  There is no key material in the
+ * app to check a signature against, so this is only a structural check: a set that is well
+ * formed and was signed recently is Unverified, anything else Invalid.  The check is cheap and
+ * runs on the ingest thread.  Its result is cached on the aircraft against a fingerprint of the
+ * set, so a drone repeating the same signature every broadcast cycle is only checked once.
+ */
+final class AuthVerification {
+    private static final String TAG = "AuthVerification";
+    // Authentication timestamps are seconds since 00:00:00 01/01/2019 UTC.
+    private static final long AUTH_EPOCH_SECONDS = 1546300800L;
+    private static final long MAX_CLOCK_SKEW_SECONDS = 24 * 60 * 60;
+
+    private AuthVerification() {}
+
+    @NonNull
+    static VerificationEnum checkStructure(@NonNull AuthenticationData.AuthTypeEnum authType,
+                                           long authTimestamp, int authLength) {
+        if (authType == AuthenticationData.AuthTypeEnum.None || 0 == authLength)
+            return VerificationEnum.Invalid;
+        long nowSeconds = System.currentTimeMillis() / 1000 - AUTH_EPOCH_SECONDS;
+        if (0 == authTimestamp || Math.abs(nowSeconds - authTimestamp) > MAX_CLOCK_SKEW_SECONDS)
+            return VerificationEnum.Invalid;
+        return VerificationEnum.Unverified;
+    }
+
+    /* Ingest thread.  Called each time a page completes ac's current authentication set; posts
+     * the result to ac's authentication record.
+     */
+    static void verify(@NonNull AircraftObject ac) {
+        AuthenticationData auth = ac.getAuthentication();
+        int length = auth.getAuthLength();
+        long fingerprint = OpenDroneIdParser.fingerprint(auth.getAuthData(), 0, length)
+                ^ auth.getAuthTimestamp() ^ auth.getAuthType().id;
+        if (fingerprint == ac.getAuthVerifiedFingerprint())
+            return;
+        ac.setAuthVerifiedFingerprint(fingerprint);
+
+        VerificationEnum result = checkStructure(auth.getAuthType(), auth.getAuthTimestamp(), length);
+        if (result != ac.getAuthVerification()) {
+            CaltopoClient.CTInfo(TAG, String.format(Locale.US, "%s: %s authentication is %s.",
+                    ac.getIdentification1().getSanitizedUasId(), auth.getAuthType(), result));
+        }
+        ac.setAuthVerification(result);
+    }
+}
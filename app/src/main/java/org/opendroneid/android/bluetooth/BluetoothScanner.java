@@ -25,14 +25,18 @@ import android.content.Context;
 import android.content.pm.PackageManager;
 import android.os.Build;
 import android.os.ParcelUuid;
+import android.os.SystemClock;
 
 import androidx.annotation.NonNull;
 import androidx.core.app.ActivityCompat;
 
 import org.ncssar.rid2caltopo.app.R2CActivity;
+import org.ncssar.rid2caltopo.data.CaltopoClient;
 import org.ncssar.rid2caltopo.data.CtDroneSpec;
+import org.ncssar.rid2caltopo.data.DelayedExec;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 import java.util.UUID;
@@ -45,6 +49,28 @@ public class BluetoothScanner {
     private BluetoothLeScanner bluetoothLeScanner;
     private final Context context;
 
+    /* Adaptive duty cycling.  Scanning starts in low latency mode.  Once no drone has been heard
+     * for the quiet period it steps down to balanced, and after twice the quiet period to low
+     * power.  The first Open Drone ID frame, or a peer R2C reporting a drone, puts it straight
+     * back in low latency mode.  Everything here runs on the main thread.
+     */
+    enum ScanMode {
+        LowLatency(ScanSettings.SCAN_MODE_LOW_LATENCY),
+        Balanced(ScanSettings.SCAN_MODE_BALANCED),
+        LowPower(ScanSettings.SCAN_MODE_LOW_POWER);
+
+        ScanMode(int androidMode) { this.androidMode = androidMode; }
+        final int androidMode;
+    }
+    private static final long QUIET_CHECK_INTERVAL_MSEC = 15000;
+    private static volatile BluetoothScanner ActiveScanner;
+    private ScanMode scanMode = ScanMode.LowLatency;
+    private boolean scanning;
+    private long lastActivityMsec;
+    private long modeStartedMsec;
+    private final long[] timeInModeMsec = new long[ScanMode.values().length];
+    private final DelayedExec quietCheck = new DelayedExec();
+
     public BluetoothScanner(@NonNull Context context, @NonNull OpenDroneIdDataManager dataManager) {
         this.context = context;
         this.dataManager = dataManager;
@@ -78,18 +104,18 @@ public class BluetoothScanner {
                 return;
             byte[] bytes = scanRecord.getBytes();
 
-            CtDroneSpec.TransportTypeEnum transportType = CtDroneSpec.TransportTypeEnum.BT4;
-            if (bluetoothAdapter.isLeCodedPhySupported()) {
-                if (result.getPrimaryPhy() == BluetoothDevice.PHY_LE_CODED)
-                    transportType = CtDroneSpec.TransportTypeEnum.BT5;
-            }
+            CtDroneSpec.TransportTypeEnum transportType =
+                    transportTypeOf(result, bluetoothAdapter.isLeCodedPhySupported());
 
             if (null != dataManager) dataManager.receiveDataBluetooth(bytes, result, transportType);
+            onActivity();
         }
 
         @Override
         public void onBatchScanResults(List<ScanResult> results) {
-            CTInfo(TAG, "onBatchScanResults: " + results);
+            if (!results.isEmpty()) onActivity();
+            if (null != dataManager)
+                dataManager.receiveBatchBluetooth(results, bluetoothAdapter.isLeCodedPhySupported());
         }
 
         @Override
@@ -98,6 +124,12 @@ public class BluetoothScanner {
         }
     };
 
+    static CtDroneSpec.TransportTypeEnum transportTypeOf(ScanResult result, boolean codedPhySupported) {
+        if (codedPhySupported && result.getPrimaryPhy() == BluetoothDevice.PHY_LE_CODED)
+            return CtDroneSpec.TransportTypeEnum.BT5;
+        return CtDroneSpec.TransportTypeEnum.BT4;
+    }
+
     /* OpenDroneID Bluetooth beacons identify themselves by setting the GAP AD Type to
      * "Service Data - 16-bit UUID" and the value to 0xFFFA for ASTM International, ASTM Remote ID.
      * https://www.bluetooth.com/specifications/assigned-numbers/ -> "Generic Access Profile"
@@ -109,7 +141,89 @@ public class BluetoothScanner {
     private static final ParcelUuid SERVICE_pUUID = new ParcelUuid(SERVICE_UUID);
     private static final byte[] OPEN_DRONE_ID_AD_CODE = new byte[]{(byte) 0x0D};
 
+    /* Any thread.  A peer R2C has reported a drone near us, so one may come into range. */
+    public static void PeerReportedDrone() {
+        CaltopoClient.RunOnMainThread(() -> {
+            BluetoothScanner scanner = ActiveScanner;
+            if (null != scanner) scanner.onActivity();
+        });
+    }
+
+    private void onActivity() {
+        lastActivityMsec = SystemClock.elapsedRealtime();
+        WiFiScanner.BluetoothActivity();
+        if (scanning && scanMode != ScanMode.LowLatency) switchScanMode(ScanMode.LowLatency);
+    }
+
+    private void checkQuietPeriod() {
+        long quietPeriodMsec = quietPeriodMsec(CaltopoClient.GetBleQuietPeriodInSeconds());
+        if (!scanning || 0 == quietPeriodMsec) return;
+        ScanMode target = quietScanMode(SystemClock.elapsedRealtime() - lastActivityMsec, quietPeriodMsec);
+        // Only ever steps down here, onActivity() steps back up.
+        if (target.ordinal() > scanMode.ordinal()) switchScanMode(target);
+    }
+
+    /* The quiet period setting in msec, 0 to stay in low latency mode.  A period shorter than
+     * the interval it is checked at is raised to it, as the settings screen does, in case an
+     * older archived setting holds one.
+     */
+    static long quietPeriodMsec(long quietPeriodInSeconds) {
+        if (quietPeriodInSeconds <= 0) return 0;
+        return Math.max(quietPeriodInSeconds * 1000, QUIET_CHECK_INTERVAL_MSEC);
+    }
+
+    /* The mode to scan in after quietMsec without hearing anything. */
+    static ScanMode quietScanMode(long quietMsec, long quietPeriodMsec) {
+        return quietMsec >= 2 * quietPeriodMsec ? ScanMode.LowPower :
+                quietMsec >= quietPeriodMsec ? ScanMode.Balanced : ScanMode.LowLatency;
+    }
+
+    private void accountScanModeTime() {
+        long now = SystemClock.elapsedRealtime();
+        timeInModeMsec[scanMode.ordinal()] += now - modeStartedMsec;
+        modeStartedMsec = now;
+    }
+
+    private String timeInModesAsString() {
+        StringBuilder sb = new StringBuilder();
+        for (ScanMode mode : ScanMode.values()) {
+            if (sb.length() > 0) sb.append(", ");
+            sb.append(String.format(Locale.US, "%s %d s", mode, timeInModeMsec[mode.ordinal()] / 1000));
+        }
+        return sb.toString();
+    }
+
+    private void switchScanMode(ScanMode newMode) {
+        accountScanModeTime();
+        CTInfo(TAG, String.format(Locale.US, "switchScanMode(): %s -> %s, time in modes: %s",
+                scanMode, newMode, timeInModesAsString()));
+        stopLeScan();
+        scanMode = newMode;
+        startLeScan();
+    }
+
     public void startScan() {
+        scanMode = ScanMode.LowLatency;
+        lastActivityMsec = modeStartedMsec = SystemClock.elapsedRealtime();
+        Arrays.fill(timeInModeMsec, 0);
+        scanning = true;
+        ActiveScanner = this;
+        quietCheck.start(this::checkQuietPeriod, QUIET_CHECK_INTERVAL_MSEC, QUIET_CHECK_INTERVAL_MSEC);
+        startLeScan();
+    }
+
+    public void stopScan() {
+        if (scanning) {
+            accountScanModeTime();
+            CTInfo(TAG, "stopScan(): time in modes: " + timeInModesAsString());
+        }
+        scanning = false;
+        if (ActiveScanner == this) ActiveScanner = null;
+        quietCheck.stop();
+        stopLeScan();
+    }
+
+    private void startLeScan() {
         if (null == bluetoothAdapter) {
             CTError(TAG, "startScan(): bluetooth adapter missing.");
             return;
@@ -121,18 +235,25 @@ public class BluetoothScanner {
         List<ScanFilter> scanFilters = new ArrayList<>();
         scanFilters.add(builder.build());
 
-        ScanSettings scanSettings = new ScanSettings.Builder()
-                .setScanMode(ScanSettings.SCAN_MODE_LOW_LATENCY)
-                .build();
+        ScanSettings.Builder settingsBuilder = new ScanSettings.Builder()
+                .setScanMode(scanMode.androidMode);
         if (bluetoothAdapter.isLeCodedPhySupported() &&
                 bluetoothAdapter.isLeExtendedAdvertisingSupported()) {
             CTDebug(TAG, "startScan: Enable scanning also for devices advertising on an LE Coded PHY S2 or S8");
-            scanSettings = new ScanSettings.Builder()
-                    .setScanMode(ScanSettings.SCAN_MODE_LOW_LATENCY)
-                    .setLegacy(false)
-                    .setPhy(ScanSettings.PHY_LE_ALL_SUPPORTED)
-                    .build();
+            settingsBuilder.setLegacy(false)
+                    .setPhy(ScanSettings.PHY_LE_ALL_SUPPORTED);
         }
+        if (CaltopoClient.GetBleBatchMode()) {
+            if (bluetoothAdapter.isOffloadedScanBatchingSupported()) {
+                long reportDelayInMsec = CaltopoClient.GetBleReportDelayInMsec();
+                CTDebug(TAG, String.format(Locale.US,
+                        "startScan: Batching scan results with a %d ms report delay", reportDelayInMsec));
+                settingsBuilder.setReportDelay(reportDelayInMsec);
+            } else {
+                CTWarn(TAG, "startScan: Controller doesn't support batched scan results, using immediate reports.");
+            }
+        }
+        ScanSettings scanSettings = settingsBuilder.build();
 
         if (bluetoothLeScanner != null) {
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
@@ -141,12 +262,12 @@ public class BluetoothScanner {
                     return;
                 }
             }
-            CTDebug(TAG, "startScan: Calling bluetoothLeScanner.startScan");
+            CTDebug(TAG, "startScan: Calling bluetoothLeScanner.startScan in " + scanMode + " mode");
             bluetoothLeScanner.startScan(scanFilters, scanSettings, scanCallback);
         }
     }
 
-    public void stopScan() {
+    private void stopLeScan() {
         if (bluetoothLeScanner != null) {
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
                 if (ActivityCompat.checkSelfPermission(context, Manifest.permission.BLUETOOTH_SCAN) != PackageManager.PERMISSION_GRANTED) {
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2025 Ken Taylor
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+package org.opendroneid.android.bluetooth;
+
+import android.os.SystemClock;
+
+/** DroneClock
+ * Turns the Location message timestamp, tenths of a second since the start of the current UTC
+ * hour, into milliseconds since the epoch.  Every frame already carries the elapsedRealtimeNanos
+ * it was received at, so the wall clock is only read to re-anchor that timebase now and then
+ * instead of once per frame.  The hour is the one that puts the drone's timestamp nearest to
+ * when the frame was received, which settles a rollover either side of the hour the same way
+ * however the frame was delayed.  Used only on the ingest thread.
+ */
+final class DroneClock {
+    static final int INVALID_TIMESTAMP = 0xFFFF;
+    private static final long HOUR_MSEC = 60 * 60 * 1000;
+    private static final long MAX_TIMESTAMP_MSEC = HOUR_MSEC - 1;
+    // Follows wall clock adjustments (NTP, network time) without reading it for every frame.
+    private static final long REANCHOR_INTERVAL_NANOS = 60_000_000_000L;
+
+    private long wallMinusElapsedMsec;
+    private long anchoredAtNanos;
+    private boolean anchored;
+
+    /* Milliseconds since the epoch at which a frame received at elapsedRealtimeNanos timeNano
+     * arrived.
+     */
+    long receiveTimeMsec(long timeNano) {
+        if (!anchored || timeNano - anchoredAtNanos > REANCHOR_INTERVAL_NANOS) {
+            long elapsedNanos = SystemClock.elapsedRealtimeNanos();
+            wallMinusElapsedMsec = System.currentTimeMillis() - elapsedNanos / 1_000_000;
+            anchoredAtNanos = elapsedNanos;
+            anchored = true;
+        }
+        return wallMinusElapsedMsec + timeNano / 1_000_000;
+    }
+
+    /* Milliseconds since the epoch for a Location timestamp of tenthsOfASecond past the hour,
+     * received at receiveTimeMsec.  Returns -1 if the timestamp is out of range.
+     */
+    static long droneTimeMsec(int tenthsOfASecond, long receiveTimeMsec) {
+        long sinceHourMsec = tenthsOfASecond * 100L;
+        if (tenthsOfASecond < 0 || sinceHourMsec > MAX_TIMESTAMP_MSEC)
+            return -1;
+        long timeMsec = Math.floorDiv(receiveTimeMsec, HOUR_MSEC) * HOUR_MSEC + sinceHourMsec;
+        long offsetMsec = timeMsec - receiveTimeMsec;
+        if (offsetMsec > HOUR_MSEC / 2) timeMsec -= HOUR_MSEC;
+        else if (offsetMsec < -HOUR_MSEC / 2) timeMsec += HOUR_MSEC;
+        return timeMsec;
+    }
+}
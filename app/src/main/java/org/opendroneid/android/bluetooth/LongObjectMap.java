@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2025 Ken Taylor
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+package org.opendroneid.android.bluetooth;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/** LongObjectMap
+ * Open addressing (linear probing) map from a primitive long key to a non-null value, so the
+ * per-frame aircraft lookups don't box their key.  There is a single writer thread, the data
+ * manager's ingest thread, which may use every method.  The only call safe from other threads
+ * is forEach() with a visitor that ignores the key: values are release-written and
+ * acquire-read, and growing publishes the new table through a volatile field, so every value
+ * seen is a live one.  Keys are plain fields, though, and remove() shifts entries back into
+ * the slot it empties, so another thread can pair a value with the key of the entry moved into
+ * its slot after it, or miss an entry altogether.  get() and key-dependent visitors are
+ * therefore writer thread only.
+ */
+public final class LongObjectMap<V> {
+    private static final int MIN_CAPACITY = 16;
+
+    public interface Visitor<V> {
+        void visit(long key, V value);
+    }
+
+    private static final class Table<V> {
+        final long[] keys;
+        final AtomicReferenceArray<V> values;
+        final int mask;
+
+        Table(int capacity) {
+            keys = new long[capacity];
+            values = new AtomicReferenceArray<>(capacity);
+            mask = capacity - 1;
+        }
+    }
+
+    private volatile Table<V> table;
+    private volatile int size;
+
+    public LongObjectMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public LongObjectMap(int expectedSize) {
+        // Keep the table at most half full so probe sequences stay short.
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2) capacity <<= 1;
+        table = new Table<>(capacity);
+    }
+
+    public int size() { return size; }
+
+    private static int index(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /* Writer thread only, see the class comment. */
+    public V get(long key) {
+        Table<V> t = table;
+        for (int i = index(key, t.mask); ; i = (i + 1) & t.mask) {
+            V value = t.values.get(i);
+            if (null == value) return null;
+            if (t.keys[i] == key) return value;
+        }
+    }
+
+    /* Writer thread only.  Returns the value previously stored for key, or null. */
+    public V put(long key, V value) {
+        if (null == value) throw new NullPointerException("LongObjectMap doesn't hold null values");
+        Table<V> t = table;
+        int i = index(key, t.mask);
+        for (V existing; null != (existing = t.values.get(i)); i = (i + 1) & t.mask) {
+            if (t.keys[i] == key) {
+                t.values.lazySet(i, value);
+                return existing;
+            }
+        }
+        t.keys[i] = key;
+        t.values.lazySet(i, value);
+        int newSize = size + 1;
+        size = newSize;
+        if (newSize * 2 > t.mask + 1) grow(t);
+        return null;
+    }
+
+    /* Writer thread only.  Returns the value that was removed, or null.  The entries after the
+     * removed one in its probe run are shifted back to close the gap.
+     */
+    public V remove(long key) {
+        Table<V> t = table;
+        int i = index(key, t.mask);
+        V removed;
+        for (; ; i = (i + 1) & t.mask) {
+            removed = t.values.get(i);
+            if (null == removed) return null;
+            if (t.keys[i] == key) break;
+        }
+        t.values.lazySet(i, null);
+        size = size - 1;
+        int hole = i;
+        for (int j = (hole + 1) & t.mask; ; j = (j + 1) & t.mask) {
+            V value = t.values.get(j);
+            if (null == value) break;
+            int home = index(t.keys[j], t.mask);
+            // Move the entry back only if the hole lies on its probe path, home..j cyclically.
+            if (((j - home) & t.mask) >= ((j - hole) & t.mask)) {
+                t.keys[hole] = t.keys[j];
+                t.values.lazySet(hole, value);
+                t.values.lazySet(j, null);
+                hole = j;
+            }
+        }
+        return removed;
+    }
+
+    private void grow(Table<V> old) {
+        Table<V> t = new Table<>((old.mask + 1) * 2);
+        for (int j = 0; j <= old.mask; j++) {
+            V value = old.values.get(j);
+            if (null == value) continue;
+            long key = old.keys[j];
+            int i = index(key, t.mask);
+            while (null != t.values.get(i)) i = (i + 1) & t.mask;
+            t.keys[i] = key;
+            t.values.lazySet(i, value);
+        }
+        table = t;
+    }
+
+    /* Writer thread, or any thread with a visitor that ignores the key, see the class comment.
+     * Entries added, removed or moved while iterating may or may not be visited.
+     */
+    public void forEach(Visitor<? super V> visitor) {
+        Table<V> t = table;
+        for (int i = 0; i <= t.mask; i++) {
+            V value = t.values.get(i);
+            if (null != value) visitor.visit(t.keys[i], value);
+        }
+    }
+}
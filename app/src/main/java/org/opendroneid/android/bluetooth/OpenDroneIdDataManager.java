@@ -6,36 +6,122 @@
  */
 package org.opendroneid.android.bluetooth;
 
+import android.bluetooth.le.ScanRecord;
 import android.bluetooth.le.ScanResult;
+import android.os.SystemClock;
 import android.util.Log;
 
+import androidx.annotation.NonNull;
+
 import org.ncssar.rid2caltopo.data.CtDroneSpec;
 import org.opendroneid.android.Constants;
 import org.opendroneid.android.data.AircraftObject;
+import org.opendroneid.android.data.AircraftSnapshot;
 import org.opendroneid.android.data.Connection;
+import org.opendroneid.android.data.EvictedAircraft;
 import org.opendroneid.android.data.Identification;
 import org.opendroneid.android.data.AuthenticationData;
 import org.opendroneid.android.data.LocationData;
 import org.opendroneid.android.data.SelfIdData;
 import org.opendroneid.android.data.SystemData;
 import org.opendroneid.android.data.OperatorIdData;
+import org.opendroneid.android.data.LinkStats;
+import org.opendroneid.android.data.ReceiverLocation;
 import org.ncssar.rid2caltopo.data.CaltopoClient;
 
-import java.time.Instant;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Locale;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
 
 public class OpenDroneIdDataManager {
-    public final ConcurrentHashMap<Long, AircraftObject> aircraft = new ConcurrentHashMap<>();
+    /* Aircraft by the MAC (or NaN peer handle) each frame arrived from.  Several MACs can alias
+     * the same aircraft: NaN and randomized BLE addresses rotate, and many remote ID modules
+     * broadcast on both Bluetooth and WiFi.  The aliases are resolved by aircraftByUasId.
+     * Written only by the ingest thread, other threads only walk its values, see getAircraft().
+     */
+    private final LongObjectMap<AircraftAlias> aircraft = new LongObjectMap<>();
+    // Canonical aircraft by OpenDroneIdParser.basicIdUasIdKey().  Only used on the ingest thread.
+    private final LongObjectMap<AircraftObject> aircraftByUasId = new LongObjectMap<>();
+
+    private static final class AircraftAlias extends TimingWheel.Node {
+        final long macAddressLong;
+        final AircraftObject aircraft;
+
+        AircraftAlias(long macAddressLong, AircraftObject aircraft) {
+            this.macAddressLong = macAddressLong;
+            this.aircraft = aircraft;
+        }
+    }
+
+    /* Idle eviction.  Each MAC alias expires once nothing has been heard on it for
+     * ALIAS_TTL_TICKS, and an aircraft is evicted when its last alias expires, so rotated
+     * MACs and drones that have left don't accumulate over a long mission.  The wheel is
+     * advanced by the ingest loop, which wakes at least once every INGEST_IDLE_WAIT_MSEC.
+     * The Caltopo track lives in CaltopoClient and isn't affected.
+     */
+    private static final long EVICTION_TICK_MSEC = 1000;
+    private static final int ALIAS_TTL_TICKS = 120;
+    private static final int EVICTION_WHEEL_SLOTS = 128;
+    private final TimingWheel<AircraftAlias> aliasWheel = new TimingWheel<>(EVICTION_WHEEL_SLOTS,
+            ALIAS_TTL_TICKS, SystemClock.elapsedRealtime() / EVICTION_TICK_MSEC);
+    private final TimingWheel.ExpiryHandler<AircraftAlias> aliasExpiry = this::expireAlias;
+    // Aircraft left with no aliases since the last sweep of aircraftByUasId.
+    private final ArrayList<AircraftObject> retiredAircraft = new ArrayList<>();
+    // UAS ID keys of retired aircraft found by the sweep, removed once it's done.
+    private long[] staleUasIdKeys = new long[16];
+    private int staleUasIdKeyCount;
+    private final LongObjectMap.Visitor<AircraftObject> staleUasIdFinder = (key, ac) -> {
+        if (0 != ac.getAliasCount()) return;
+        if (staleUasIdKeyCount == staleUasIdKeys.length)
+            staleUasIdKeys = Arrays.copyOf(staleUasIdKeys, 2 * staleUasIdKeyCount);
+        staleUasIdKeys[staleUasIdKeyCount++] = key;
+    };
 
     private static final String TAG = "OpenDroneIdDataManager";
 
-    public android.location.Location receiverLocation;
+    // Set from the main thread, read by the ingest thread.
+    private volatile ReceiverLocation receiverLocation;
+    private long receiverLocationEpoch;
 
     private final Callback callback;
 
+    private static final int INGEST_QUEUE_SIZE = 256; // per lane
+    private static final long INGEST_IDLE_WAIT_MSEC = 1000;
+    private static final long INGEST_STOP_WAIT_MSEC = 500;
+    private final OpenDroneIdIngestQueue ingestQueue = new OpenDroneIdIngestQueue(INGEST_QUEUE_SIZE);
+    private final OpenDroneIdIngestQueue.FrameHandler frameHandler = this::ingestFrame;
+    private volatile Thread ingestThread;
+    private volatile int ingestBatchSize;
+
+    /* Aircraft state is published to observers as snapshots at most once per publish interval,
+     * however fast frames arrive, so observer churn follows the display rather than the radios.
+     */
+    private volatile long publishIntervalMsec;
+    private long nextPublishMsec;
+    private boolean snapshotsPending;
+    private final LongObjectMap.Visitor<AircraftAlias> snapshotPublisher =
+            (mac, alias) -> alias.aircraft.publishSnapshot();
+
+    /* Positions waiting for each drone's CaltopoWorkers thread, by the remote id they're posted
+     * under.  Only used on the ingest thread, entries go when their aircraft is evicted.
+     */
+    private final HashMap<String, WaypointMailbox> waypointMailboxes = new HashMap<>();
+    private volatile long coalescedWaypoints;
+
+    // The dropped frame and coalesced position counts are logged this often if they've changed.
+    private static final long STATS_LOG_INTERVAL_TICKS = 60;
+    private long nextStatsLogTick;
+    private long loggedDroppedFrames;
+    private long loggedCoalescedWaypoints;
+    private final DroneClock droneClock = new DroneClock();
+
     public static class Callback {
+        // Called on the ingest thread.
         public void onNewAircraft(AircraftObject object) {}
     }
 
@@ -43,50 +129,314 @@ public class OpenDroneIdDataManager {
         this.callback = callback;
     }
 
-    public ConcurrentHashMap<Long, AircraftObject> getAircraft() {
-        return aircraft;
+    /* Any thread.  Returns each aircraft currently known once, however many MACs alias it. */
+    public List<AircraftObject> getAircraft() {
+        Set<AircraftObject> distinct = new LinkedHashSet<>();
+        // Ignores the key, the only way LongObjectMap can be read off the ingest thread.
+        aircraft.forEach((mac, alias) -> distinct.add(alias.aircraft));
+        return new ArrayList<>(distinct);
     }
 
-    void receiveDataBluetooth(byte[] data, ScanResult result, CtDroneSpec.TransportTypeEnum transportType) {
-        String macAddress = result.getDevice().getAddress();
-        String macAddressCleaned = macAddress.replace(":", "");
-        long macAddressLong = Long.parseLong(macAddressCleaned,16);
+    /* Start the ingest thread that decodes the frames queued by the scanners. */
+    public void start() {
+        if (null != ingestThread) return;
+        ingestBatchSize = CaltopoClient.GetBleBatchSize();
+        publishIntervalMsec = CaltopoClient.GetAircraftPublishIntervalInMsec();
+        Thread thread = new Thread(this::ingestLoop, "OpenDroneIdIngest");
+        ingestThread = thread;
+        thread.start();
+    }
 
-        OpenDroneIdParser.Message<?> message =
-                OpenDroneIdParser.parseData(data, 6, result.getTimestampNanos(), receiverLocation);
-        if (message == null)
+    public void stop() {
+        Thread thread = ingestThread;
+        if (null == thread) return;
+        ingestThread = null;
+        thread.interrupt();
+        try {
+            thread.join(INGEST_STOP_WAIT_MSEC);
+        } catch (InterruptedException e) {
+            CaltopoClient.CTWarn(TAG, "stop(): interrupted waiting for ingest thread to exit.");
+        }
+    }
+
+    /* Main thread.  Called with each new fix of this device's location. */
+    public void setReceiverLocation(@NonNull android.location.Location location) {
+        receiverLocation = new ReceiverLocation(location.getLatitude(), location.getLongitude(),
+                                                ++receiverLocationEpoch);
+    }
+
+    /* Frames dropped because the ingest queue was full. */
+    public long getDroppedFrames() { return ingestQueue.getDroppedFrames(); }
+
+    /* Positions replaced by a newer one before their drone's Caltopo worker got to them. */
+    public long getCoalescedWaypoints() { return coalescedWaypoints; }
+
+    private void ingestLoop() {
+        CaltopoClient.CTDebug(TAG, "ingestLoop(): starting.");
+        while (ingestThread == Thread.currentThread()) {
+            try {
+                int handled = ingestQueue.drainByPriority(frameHandler, ingestBatchSize);
+                long now = SystemClock.elapsedRealtime();
+                if (snapshotsPending && now >= nextPublishMsec) {
+                    aircraft.forEach(snapshotPublisher);
+                    snapshotsPending = false;
+                    nextPublishMsec = now + publishIntervalMsec;
+                }
+                long tick = now / EVICTION_TICK_MSEC;
+                if (tick != aliasWheel.getCurrentTick())
+                    evictIdle(tick);
+                if (tick >= nextStatsLogTick) {
+                    logIngestStats();
+                    nextStatsLogTick = tick + STATS_LOG_INTERVAL_TICKS;
+                }
+                if (0 == handled) {
+                    ingestQueue.await(snapshotsPending ?
+                            Math.max(1, nextPublishMsec - now) : INGEST_IDLE_WAIT_MSEC);
+                }
+            } catch (Exception e) {
+                CaltopoClient.CTError(TAG, "ingestLoop(): decoding frame raised:", e);
+            }
+        }
+        CaltopoClient.CTDebug(TAG, "ingestLoop(): exiting.");
+    }
+
+    private void logIngestStats() {
+        if (CaltopoClient.DebugLevel < CaltopoClient.DebugLevelDebug)
             return;
-        receiveData(result.getTimestampNanos(), macAddress, macAddressLong, result.getRssi(),
-                    message, transportType);
+        long dropped = getDroppedFrames();
+        long coalesced = getCoalescedWaypoints();
+        if (dropped == loggedDroppedFrames && coalesced == loggedCoalescedWaypoints)
+            return;
+        CaltopoClient.CTDebug(TAG, String.format(Locale.US,
+                "ingest: %d frames dropped (%d location, %d static), %d positions coalesced.",
+                dropped, ingestQueue.getDroppedFrames(OpenDroneIdIngestQueue.LANE_LOCATION),
+                ingestQueue.getDroppedFrames(OpenDroneIdIngestQueue.LANE_STATIC), coalesced));
+        loggedDroppedFrames = dropped;
+        loggedCoalescedWaypoints = coalesced;
     }
 
-    void receiveDataNaN(byte[] data, int peerHash, long timeNano, CtDroneSpec.TransportTypeEnum transportType) {
-        OpenDroneIdParser.Message<?> message =
-                OpenDroneIdParser.parseData(data, 1, timeNano, receiverLocation);
-        if (message == null) {
-            CaltopoClient.CTError(TAG, "Not able to parse NaN data.");
+    /* Ingest thread.  Expires the aliases idle as of tick and evicts aircraft left without any. */
+    void evictIdle(long tick) {
+        int expired = aliasWheel.advanceTo(tick, aliasExpiry);
+        if (retiredAircraft.isEmpty())
             return;
+
+        // An aircraft found again by its UAS ID before this sweep has aliases again and stays.
+        aircraftByUasId.forEach(staleUasIdFinder);
+        for (int i = 0; i < staleUasIdKeyCount; i++)
+            aircraftByUasId.remove(staleUasIdKeys[i]);
+        staleUasIdKeyCount = 0;
+
+        int evicted = 0;
+        for (AircraftObject ac : retiredAircraft) {
+            if (0 != ac.getAliasCount())
+                continue;
+            evicted++;
+            dropWaypointMailbox(ac);
+            // The summary goes to the debug log, where it can be looked at after the mission.
+            if (0 != ac.getUasIdKey() && CaltopoClient.DebugLevel >= CaltopoClient.DebugLevelDebug)
+                CaltopoClient.CTDebug(TAG, "evicted " + new EvictedAircraft(ac));
+        }
+        retiredAircraft.clear();
+        if (CaltopoClient.DebugLevel >= CaltopoClient.DebugLevelDebug) {
+            CaltopoClient.CTDebug(TAG, String.format(Locale.US,
+                    "evictIdle(): expired %d aliases, evicted %d aircraft, %d aliases remain.",
+                    expired, evicted, aircraft.size()));
+        }
+    }
+
+    private void dropWaypointMailbox(AircraftObject ac) {
+        String idStr = ac.getIdentification1().getSanitizedUasId();
+        if (idStr.isEmpty()) return;
+        if (CaltopoClient.DebugLevel >= CaltopoClient.DebugLevelDebug) {
+            for (CtDroneSpec.TransportTypeEnum tt : CtDroneSpec.TransportTypeEnum.values()) {
+                LinkStats stats = ac.getLinkStats(tt);
+                if (stats.getReceived() > 0)
+                    CaltopoClient.CTDebug(TAG, String.format(Locale.US, "evicted %s on %s: %s", idStr, tt, stats));
+            }
         }
-        CaltopoClient.CTInfo(TAG, "Caltopo: Wireless NaN for NAN ID: " + peerHash);
-        receiveData(timeNano, "NaN ID: " + peerHash, peerHash, 0, message, transportType);
+        WaypointMailbox mailbox = waypointMailboxes.remove(idStr);
+        if (null != mailbox && mailbox.getCoalesced() > 0
+                && CaltopoClient.DebugLevel >= CaltopoClient.DebugLevelDebug) {
+            CaltopoClient.CTDebug(TAG, String.format(Locale.US,
+                    "dropWaypointMailbox(%s): %d positions were coalesced.",
+                    idStr, mailbox.getCoalesced()));
+        }
+    }
+
+    private void expireAlias(AircraftAlias alias) {
+        if (aircraft.get(alias.macAddressLong) == alias)
+            aircraft.remove(alias.macAddressLong);
+        releaseAlias(alias.aircraft);
+    }
+
+    private AircraftAlias addAlias(long macAddressLong, AircraftObject ac) {
+        AircraftAlias alias = new AircraftAlias(macAddressLong, ac);
+        aircraft.put(macAddressLong, alias);
+        aliasWheel.add(alias);
+        ac.addAlias();
+        return alias;
     }
 
-    void receiveDataWiFiBeacon(byte[] data, String mac, long macLong, int rssi, long timeNano,
+    private void releaseAlias(AircraftObject ac) {
+        if (0 == ac.removeAlias())
+            retiredAircraft.add(ac);
+    }
+
+    /* The receiveDataXxx() methods are called from the scanner callbacks, all of which are
+     * delivered on the main thread.  They only copy the frame into the ingest queue; decoding
+     * happens on the ingest thread in ingestFrame().
+     */
+    void receiveDataBluetooth(byte[] data, ScanResult result, CtDroneSpec.TransportTypeEnum transportType) {
+        int offset = OpenDroneIdParser.findServiceDataMessage(data, data.length);
+        if (offset < 0) return;
+        int lane = laneFor(data[offset]);
+        if (queueDataBluetooth(lane, 0, data, offset, result, transportType))
+            ingestQueue.publish(lane, 1);
+    }
+
+    /* Queue a batch of BLE scan results and publish them together, so the ingest thread wakes
+     * once and decodes the whole batch in one pass.
+     */
+    void receiveBatchBluetooth(List<ScanResult> results, boolean codedPhySupported) {
+        int queuedLocation = 0;
+        int queuedStatic = 0;
+        for (ScanResult result : results) {
+            ScanRecord scanRecord = result.getScanRecord();
+            if (scanRecord == null)
+                continue;
+            byte[] data = scanRecord.getBytes();
+            int offset = OpenDroneIdParser.findServiceDataMessage(data, data.length);
+            if (offset < 0)
+                continue;
+            CtDroneSpec.TransportTypeEnum transportType =
+                    BluetoothScanner.transportTypeOf(result, codedPhySupported);
+            if (OpenDroneIdIngestQueue.LANE_LOCATION == laneFor(data[offset])) {
+                if (queueDataBluetooth(OpenDroneIdIngestQueue.LANE_LOCATION, queuedLocation,
+                                       data, offset, result, transportType))
+                    queuedLocation++;
+            } else if (queueDataBluetooth(OpenDroneIdIngestQueue.LANE_STATIC, queuedStatic,
+                                          data, offset, result, transportType)) {
+                queuedStatic++;
+            }
+        }
+        ingestQueue.publish(OpenDroneIdIngestQueue.LANE_LOCATION, queuedLocation);
+        ingestQueue.publish(OpenDroneIdIngestQueue.LANE_STATIC, queuedStatic);
+    }
+
+    /* Frames that can carry a Location message (a Location message or a message pack) go ahead
+     * of the rest, see OpenDroneIdIngestQueue.
+     */
+    private static int laneFor(byte header) {
+        int typeId = (header & 0xF0) >> 4;
+        return typeId == OpenDroneIdParser.Type.LOCATION.id || typeId == OpenDroneIdParser.Type.MESSAGE_PACK.id ?
+                OpenDroneIdIngestQueue.LANE_LOCATION : OpenDroneIdIngestQueue.LANE_STATIC;
+    }
+
+    private boolean queueDataBluetooth(int lane, int ahead, byte[] data, int offset, ScanResult result,
+                                       CtDroneSpec.TransportTypeEnum transportType) {
+        // The message has to fit in the part of the advert the frame keeps.
+        if (offset + Constants.MAX_MESSAGE_SIZE > OpenDroneIdIngestQueue.MAX_FRAME_SIZE) return false;
+        OpenDroneIdIngestQueue.Frame frame = ingestQueue.claim(lane, ahead);
+        if (null == frame) return false;
+        frame.kind = OpenDroneIdIngestQueue.KIND_BLUETOOTH;
+        frame.copyFrom(data, 0, data.length);
+        frame.messageOffset = offset;
+        frame.address = result.getDevice().getAddress();
+        frame.rssi = result.getRssi();
+        frame.timeNano = result.getTimestampNanos();
+        frame.transportType = transportType;
+        return true;
+    }
+
+    void receiveDataNaN(byte[] data, int peerHash, long timeNano, CtDroneSpec.TransportTypeEnum transportType) {
+        if (data.length < 2) return;
+        int lane = laneFor(data[1]);
+        OpenDroneIdIngestQueue.Frame frame = ingestQueue.claim(lane, 0);
+        if (null == frame) return;
+        frame.kind = OpenDroneIdIngestQueue.KIND_WIFI_NAN;
+        frame.copyFrom(data, 0, data.length);
+        frame.addressLong = peerHash;
+        frame.rssi = 0;
+        frame.timeNano = timeNano;
+        frame.transportType = transportType;
+        ingestQueue.publish(lane, 1);
+    }
+
+    void receiveDataWiFiBeacon(ByteBuffer buf, int offset, String mac, long macLong, int rssi, long timeNano,
                                CtDroneSpec.TransportTypeEnum transportType) {
-        OpenDroneIdParser.Message<?> message =
-                OpenDroneIdParser.parseData(data, 1, timeNano, receiverLocation);
-        if (message == null)
-            return;
-        receiveData(timeNano, mac, macLong, rssi, message, transportType);
+        if (buf.limit() - offset < 2) return;
+        int lane = laneFor(buf.get(offset + 1));
+        OpenDroneIdIngestQueue.Frame frame = ingestQueue.claim(lane, 0);
+        if (null == frame) return;
+        frame.kind = OpenDroneIdIngestQueue.KIND_WIFI_BEACON;
+        frame.copyFrom(buf, offset);
+        frame.address = mac;
+        frame.addressLong = macLong;
+        frame.rssi = rssi;
+        frame.timeNano = timeNano;
+        frame.transportType = transportType;
+        ingestQueue.publish(lane, 1);
     }
+
+    private void ingestFrame(OpenDroneIdIngestQueue.Frame frame) {
+        byte[] data = frame.data;
+        int length = frame.length;
+        switch (frame.kind) {
+            case OpenDroneIdIngestQueue.KIND_BLUETOOTH: {
+                String macAddress = frame.address;
+                long macAddressLong = OpenDroneIdParser.parseMacAddress(macAddress);
+                if (macAddressLong < 0)
+                    return;
+
+                int offset = frame.messageOffset;
+                // The advert was found before it was copied, so it may run past the frame.
+                int end = Math.min(OpenDroneIdParser.serviceDataEnd(data, offset), length);
+                if (!isValidMessage(data, offset, end))
+                    return;
+                receiveData(frame.timeNano, macAddress, macAddressLong, frame.rssi,
+                            data, offset, end, frame.transportType);
+                break;
+            }
+            case OpenDroneIdIngestQueue.KIND_WIFI_NAN: {
+                long peerHash = frame.addressLong;
+                if (!isValidMessage(data, 1, length)) {
+                    CaltopoClient.CTError(TAG, "Not able to parse NaN data.");
+                    return;
+                }
+                CaltopoClient.CTInfo(TAG, "Caltopo: Wireless NaN for NAN ID: " + peerHash);
+                receiveData(frame.timeNano, "NaN ID: " + peerHash, peerHash, 0, data, 1, length,
+                            frame.transportType);
+                break;
+            }
+            case OpenDroneIdIngestQueue.KIND_WIFI_BEACON:
+                if (!isValidMessage(data, 1, length))
+                    return;
+                receiveData(frame.timeNano, frame.address, frame.addressLong, frame.rssi, data, 1, length,
+                            frame.transportType);
+                break;
+        }
+    }
+
+    /* A message starts at offset and is preceded by its msgCounter, so the offset has to be
+     * past the first byte and the full message has to fit in the first length bytes of data.
+     */
+    private static boolean isValidMessage(byte[] data, int offset, int length) {
+        if (offset <= 0 || !OpenDroneIdParser.hasMessage(data, offset, length))
+            return false;
+        if (null == OpenDroneIdParser.type(data, offset)) {
+            CaltopoClient.CTError(TAG, "Header type unknown");
+            return false;
+        }
+        return true;
+    }
+
     void updateCaltopo(AircraftObject ac, CtDroneSpec.TransportTypeEnum transportType) {
         Identification acId = ac.getIdentification1();
 
         if (null == acId) return;
-        String rawStr = acId.getUasIdAsString();
-        if (null == rawStr) return;
-        // remove nulls and any other garbage from idstr:
-        String idStr = rawStr.replaceAll("[^A-Z0-9]", "");
+        // Nulls and any other garbage were removed once when the Basic ID was decoded.
+        String idStr = acId.getSanitizedUasId();
         if (idStr.isEmpty()) {
             if (CaltopoClient.DebugLevel > CaltopoClient.DebugLevelDebug) {
                 CaltopoClient.CTInfo(TAG, String.format(Locale.US,
@@ -96,42 +446,29 @@ public class OpenDroneIdDataManager {
             return;
         }
 
-        CaltopoClient client = CaltopoClient.ClientForRemoteId(idStr);
         LocationData location = ac.getLocation();
         if (null != location) {
-            long timestampInTenthsOfASecond = (long)location.getLocationTimestamp();
-            /* timestampInSeconds from UAS is for the current hour based on gps, so accurate
-               w/in the current hour only.  Here's the problem: Rx UAS timestamp of 3599.9
-               (i.e. .1 second before the next hour).  With delays in transmitting/receiving the
-               UAS timestamp, it arrives here after the hour.  So if we blindly add it to the current
-               hour, we're going to occasionally see a big discontinuity in the flow of timestamps.
-               One way to prevent this is to check the arriving timestamp and if it's close to
-               rolling over, then subtract 60 seconds (more than worst-case delay) from our epoch
-               timestamp before calculating the seconds for the hour.
+            int timestampInTenthsOfASecond = (int)location.getLocationTimestamp();
+            /* The UAS timestamp is tenths of a second since the start of the current hour by gps,
+               so it is placed in the hour nearest to when its Location message was received.
+               If the drone hasn't got a valid time (yet), the receive time is used instead.
+               Either way a drone's timestamps never go backwards.
              */
-            long timestampInMilliseconds;
-            if (timestampInTenthsOfASecond != 0xffff) {
-                Instant currentInstant = Instant.now();
-                // Get the epoch second (seconds since 1970-01-01T00:00:00Z)
-                long epochSecond = currentInstant.getEpochSecond();
-                long epochSecondHr;
-                timestampInMilliseconds = timestampInTenthsOfASecond * 100;
-                if (timestampInMilliseconds >= (60 * 60 * 1000)) {
+            long receiveTimeInMilliseconds = droneClock.receiveTimeMsec(location.getTimestamp());
+            long timestampInMilliseconds = -1;
+            if (timestampInTenthsOfASecond != DroneClock.INVALID_TIMESTAMP) {
+                timestampInMilliseconds = DroneClock.droneTimeMsec(timestampInTenthsOfASecond,
+                                                                   receiveTimeInMilliseconds);
+                if (timestampInMilliseconds < 0) {
                     CaltopoClient.CTError(TAG, String.format(Locale.US,
                             "Received invalid TimestampInTenthsOfASecond:%d", timestampInTenthsOfASecond));
-                    timestampInMilliseconds = timestampInMilliseconds % (60 * 60 * 100);
-                }
-                if (timestampInMilliseconds > (59*60*1000)) {
-                    epochSecondHr = ((epochSecond - 60) / (60 * 60)) * (60 * 60);
-                } else {
-                    epochSecondHr = (epochSecond / (60 * 60)) * (60 * 60);
                 }
-                // Log.d(TAG, String.format(Locale.US, "TimestampIn:%f, epochSeconds:%d, epochSecondsHr:%d, timestampOut:%f",
-                //        timestampInSeconds, epochSecond, epochSecondHr, (double)epochSecondHr + timestampInSeconds));
-                timestampInMilliseconds += epochSecondHr * 1000;
-            } else {
-                timestampInMilliseconds = 0; // not yet valid, so just set to zero.
             }
+            if (timestampInMilliseconds < 0)
+                timestampInMilliseconds = receiveTimeInMilliseconds;
+            if (timestampInMilliseconds < ac.getLastDroneTimestampMsec())
+                timestampInMilliseconds = ac.getLastDroneTimestampMsec();
+            ac.setLastDroneTimestampMsec(timestampInMilliseconds);
             double lat = location.getLatitude();
             double lng = location.getLongitude();
             long altitudeInMeters = (long)location.getAltitudeGeodetic();
@@ -141,229 +478,260 @@ public class OpenDroneIdDataManager {
                             "TimestampIn:%d, Altitude:%d at %.5f,%.5f",
                     idStr, transportType, timestampInSeconds, altitudeInMeters, lat, lng));
              */
-            client.newWaypoint(lat, lng, altitudeInMeters, timestampInMilliseconds, transportType);
+            WaypointMailbox mailbox = waypointMailboxes.get(idStr);
+            if (null == mailbox) {
+                mailbox = new WaypointMailbox(idStr, ac.getLinkStats());
+                waypointMailboxes.put(idStr, mailbox);
+            }
+            if (mailbox.offer(lat, lng, altitudeInMeters, timestampInMilliseconds,
+                              ac.getLocationFingerprint(), transportType)) {
+                coalescedWaypoints++;
+            }
         }
     }
 
-    @SuppressWarnings("unchecked")
     void receiveData(long timeNano, String macAddress, long macAddressLong, int rssi,
-                     OpenDroneIdParser.Message<?> message, CtDroneSpec.TransportTypeEnum transportType) {
+                     byte[] data, int offset, int length, CtDroneSpec.TransportTypeEnum transportType) {
+
+        OpenDroneIdParser.Type type = OpenDroneIdParser.type(data, offset);
 
         // Handle connection
-        boolean newAircraft = false;
-
-        /* FIXME: This assumes that macAddressLong doesn't change.
-         *  Unfortunately, the remote mac address for wireless NaN messages changes.  The spec for the interface
-         *  says not to rely on it for a unique handle to the remote.   So, we really need to parse the message in
-         *  a common data buffer, then use that information to look up the Remote ID (Serial Number) and use that
-         *  as the unique handle to reference an aircraft.  Note that some aircraft remote modules broadcast both
-         *  Wireless and Bluetooth, so ideally should keep track of transport information for each within a single
-         *  aircraft instance.
-         */
-        AircraftObject ac = aircraft.get(macAddressLong);
-        if (ac == null) {
-            ac = createNewAircraft(macAddress, macAddressLong);
-            newAircraft = true;
-        }
+        AircraftAlias alias = resolveAlias(macAddress, macAddressLong,
+                                           findUasIdKey(type, data, offset, length));
+        aliasWheel.touch(alias);
+        AircraftObject ac = alias.aircraft;
         long currentTime = System.currentTimeMillis();
         ac.getConnection().msgDelta = currentTime - ac.getConnection().lastSeen;
         ac.getConnection().lastSeen = currentTime;
         ac.getConnection().rssi = rssi;
         ac.getConnection().transportType = transportType;
         ac.getConnection().setTimestamp(timeNano);
-        ac.getConnection().setMsgVersion(message.header.version);
-        ac.connection.setValue(ac.connection.getValue());
-
-        if (newAircraft) {
-            aircraft.put(macAddressLong, ac);
-            if (null != callback) callback.onNewAircraft(ac);
+        ac.getConnection().setMsgVersion(OpenDroneIdParser.version(data, offset));
+        ac.markDirty(AircraftSnapshot.CONNECTION);
+        snapshotsPending = true;
+
+        int msgCounter = data[offset - 1] & 0xFF;
+        ac.getLinkStats(transportType).onFrame(timeNano, type.id, msgCounter, rssi);
+        // Drones repeat each frame several times and often on more than one transport.  A repeat
+        // would decode to the state already held, so only its transport is passed on, letting
+        // the client's source selection see every transport the frame was heard on.
+        if (!ac.checkRecentFrame(frameKey(type, msgCounter, data, offset, length))) {
+            if (type == OpenDroneIdParser.Type.MESSAGE_PACK)
+                handleMessagePack(ac, data, offset, length, timeNano, msgCounter);
+            else
+                handleMessage(ac, type, data, offset, timeNano, msgCounter);
         }
 
-        if (message.header.type == OpenDroneIdParser.Type.MESSAGE_PACK)
-            handleMessagePack(ac, (OpenDroneIdParser.Message<OpenDroneIdParser.MessagePack>) message, timeNano, message.msgCounter);
-        else
-            handleMessages(ac, message);
-
         updateCaltopo(ac, transportType);
     }
 
-    @SuppressWarnings("unchecked")
-    private void handleMessages(AircraftObject ac, OpenDroneIdParser.Message<?> message) {
-        switch (message.header.type) {
+    /* Identifies a frame by its type, msgCounter and a fingerprint of its message or pack. */
+    private static long frameKey(OpenDroneIdParser.Type type, int msgCounter, byte[] data, int offset,
+                                 int length) {
+        int size = Constants.MAX_MESSAGE_SIZE;
+        if (type == OpenDroneIdParser.Type.MESSAGE_PACK) {
+            size = OpenDroneIdParser.PACK_MESSAGES_OFFSET
+                    + OpenDroneIdParser.validatePack(data, offset, length) * Constants.MAX_MESSAGE_SIZE;
+        }
+        long key = OpenDroneIdParser.fingerprint(data, offset, size);
+        return (key ^ type.id) * 31 + msgCounter;
+    }
+
+    /* Each handler decodes the message in place into the record the aircraft already owns and
+     * then marks that record dirty for the next snapshot.  The static messages (Basic ID, Self ID,
+     * System and Operator ID) normally repeat unchanged every broadcast cycle, so for those only
+     * msgCounter and timestamp are refreshed when the message matches the last one decoded.
+     */
+    private void handleMessage(AircraftObject ac, OpenDroneIdParser.Type type, byte[] data, int offset,
+                               long timestamp, int msgCounter) {
+        switch (type) {
             case BASIC_ID:
-                handleBasicId(ac, (OpenDroneIdParser.Message<OpenDroneIdParser.BasicId>) message);
+                handleBasicId(ac, data, offset, timestamp, msgCounter);
                 break;
             case LOCATION:
-                handleLocation(ac, (OpenDroneIdParser.Message<OpenDroneIdParser.Location>) message);
+                handleLocation(ac, data, offset, timestamp, msgCounter);
                 break;
             case AUTH:
-                handleAuthentication(ac, (OpenDroneIdParser.Message<OpenDroneIdParser.Authentication>) message);
+                handleAuthentication(ac, data, offset, timestamp, msgCounter);
                 break;
             case SELFID:
-                handleSelfID(ac, (OpenDroneIdParser.Message<OpenDroneIdParser.SelfID>) message);
+                handleSelfID(ac, data, offset, timestamp, msgCounter);
                 break;
             case SYSTEM:
-                handleSystem(ac, (OpenDroneIdParser.Message<OpenDroneIdParser.SystemMsg>) message);
+                handleSystem(ac, data, offset, timestamp, msgCounter);
                 break;
             case OPERATOR_ID:
-                handleOperatorID(ac, (OpenDroneIdParser.Message<OpenDroneIdParser.OperatorID>) message);
+                handleOperatorID(ac, data, offset, timestamp, msgCounter);
                 break;
         }
     }
 
+    /* Returns the UAS ID key of the first Basic ID message in the frame, or 0 if it has none. */
+    private static long findUasIdKey(OpenDroneIdParser.Type type, byte[] data, int offset, int length) {
+        if (type == OpenDroneIdParser.Type.BASIC_ID)
+            return OpenDroneIdParser.basicIdUasIdKey(data, offset);
+        if (type != OpenDroneIdParser.Type.MESSAGE_PACK)
+            return 0;
+        int messagesInPack = OpenDroneIdParser.validatePack(data, offset, length);
+        int subOffset = offset + OpenDroneIdParser.PACK_MESSAGES_OFFSET;
+        for (int i = 0; i < messagesInPack; i++, subOffset += Constants.MAX_MESSAGE_SIZE) {
+            if (OpenDroneIdParser.type(data, subOffset) == OpenDroneIdParser.Type.BASIC_ID)
+                return OpenDroneIdParser.basicIdUasIdKey(data, subOffset);
+        }
+        return 0;
+    }
+
+    /* Resolves a frame to the alias of its aircraft, creating either as needed.  Frames without
+     * a Basic ID go to whatever aircraft their MAC is an alias for.  A frame carrying a UAS ID
+     * that already belongs to an aircraft makes the MAC an alias of that aircraft, so a rotated
+     * MAC or a second transport keeps feeding the same state instead of starting a new one.  The
+     * aircraft the MAC was attached to before loses that alias; if it was never identified it
+     * can't have produced any Caltopo updates and is simply dropped with its last alias.
+     */
+    private AircraftAlias resolveAlias(String macAddress, long macAddressLong, long uasIdKey) {
+        AircraftAlias alias = aircraft.get(macAddressLong);
+        if (0 == uasIdKey) {
+            if (null != alias)
+                return alias;
+            return addAlias(macAddressLong, createNewAircraft(macAddress, macAddressLong));
+        }
+        AircraftObject canonical = aircraftByUasId.get(uasIdKey);
+        if (null == canonical) {
+            if (null == alias)
+                alias = addAlias(macAddressLong, createNewAircraft(macAddress, macAddressLong));
+            // First sighting of this UAS ID.  A drone with two Basic IDs registers under both.
+            aircraftByUasId.put(uasIdKey, alias.aircraft);
+            if (0 == alias.aircraft.getUasIdKey()) alias.aircraft.setUasIdKey(uasIdKey);
+            return alias;
+        }
+        if (null != alias) {
+            if (alias.aircraft == canonical)
+                return alias;
+            aliasWheel.remove(alias);
+            releaseAlias(alias.aircraft);
+        }
+        if (CaltopoClient.DebugLevel >= CaltopoClient.DebugLevelDebug) {
+            CaltopoClient.CTDebug(TAG, String.format(Locale.US,
+                    "resolveAlias(): mac:0x%x is now an alias for aircraft first seen at mac:0x%x",
+                    macAddressLong, canonical.getMacAddress()));
+        }
+        return addAlias(macAddressLong, canonical);
+    }
+
     private AircraftObject createNewAircraft(String macAddress, long macAddressLong) {
         AircraftObject ac = new AircraftObject(macAddressLong);
-        Connection connection = new Connection();
+        Connection connection = ac.getConnection();
         connection.firstSeen = System.currentTimeMillis();
         connection.macAddress = macAddress;
-        ac.connection.setValue(connection);
-
-        ac.identification1.setValue(new Identification());
-        ac.identification2.setValue(new Identification());
-        ac.location.setValue(new LocationData());
-        ac.authentication.setValue(new AuthenticationData());
-        ac.selfid.setValue(new SelfIdData());
-        ac.system.setValue(new SystemData());
-        ac.operatorid.setValue(new OperatorIdData());
+        if (null != callback) callback.onNewAircraft(ac);
         return ac;
     }
 
-    private void handleBasicId(AircraftObject ac, OpenDroneIdParser.Message<OpenDroneIdParser.BasicId> message) {
-        OpenDroneIdParser.BasicId raw = message.payload;
-        Identification data = new Identification();
-        data.setMsgCounter(message.msgCounter);
-        data.setTimestamp(message.timestamp);
-
-        data.setUaType(raw.uaType);
-        data.setIdType(raw.idType);
-        data.setUasId(raw.uasId);
+    private void handleBasicId(AircraftObject ac, byte[] raw, int offset, long timestamp, int msgCounter) {
+        Identification.IdTypeEnum idType = Identification.toIdType(OpenDroneIdParser.basicIdType(raw, offset));
 
         // This implementation can receive up-to two different types of Basic ID messages
         // Find a free slot to store the current message in or overwrite old data of same type
-        Identification id1 = ac.identification1.getValue();
-        Identification id2 = ac.identification2.getValue();
-        if (id1 == null || id2 == null)
-            return;
+        Identification id1 = ac.getIdentification1();
+        Identification id2 = ac.getIdentification2();
         Identification.IdTypeEnum type1 = id1.getIdType();
         Identification.IdTypeEnum type2 = id2.getIdType();
-        if (type1 == Identification.IdTypeEnum.None || type1 == data.getIdType()) {
-            ac.identification1.setValue(data);
+        Identification data;
+        int slot;
+        long fingerprint = OpenDroneIdParser.fingerprint(raw, offset);
+        boolean unchanged;
+        if (type1 == Identification.IdTypeEnum.None || type1 == idType) {
+            data = id1;
+            slot = AircraftSnapshot.IDENTIFICATION1;
+            unchanged = fingerprint == ac.getId1Fingerprint();
+            ac.setId1Fingerprint(fingerprint);
+        } else if (type2 == Identification.IdTypeEnum.None || type2 == idType) {
+            data = id2;
+            slot = AircraftSnapshot.IDENTIFICATION2;
+            unchanged = fingerprint == ac.getId2Fingerprint();
+            ac.setId2Fingerprint(fingerprint);
         } else {
-            if (type2 == Identification.IdTypeEnum.None || type2 == data.getIdType()) {
-                ac.identification2.setValue(data);
-            } else {
-                CaltopoClient.CTInfo(TAG, "Discarded Basic ID message of type: " + data.getIdType().toString() +
-                        ". Already have " + type1.toString() + " and " + type2.toString());
-            }
+            CaltopoClient.CTInfo(TAG, "Discarded Basic ID message of type: " + idType.toString() +
+                    ". Already have " + type1.toString() + " and " + type2.toString());
+            return;
         }
+        data.setMsgCounter(msgCounter);
+        data.setTimestamp(timestamp);
+        if (unchanged)
+            return;
+        OpenDroneIdParser.decodeBasicId(raw, offset, data);
+        ac.markDirty(slot);
     }
 
-    private void handleLocation(AircraftObject ac, OpenDroneIdParser.Message<OpenDroneIdParser.Location> message) {
-        OpenDroneIdParser.Location raw = message.payload;
-        LocationData data = new LocationData();
-        data.setMsgCounter(message.msgCounter);
-        data.setTimestamp(message.timestamp);
-
-        data.setStatus(raw.status);
-        data.setHeightType(raw.heightType);
-        data.setDirection(raw.getDirection());
-        data.setSpeedHorizontal(raw.getSpeedHori());
-        data.setSpeedVertical(raw.getSpeedVert());
-        data.setLatitude(raw.getLatitude());
-        data.setLongitude(raw.getLongitude());
-        data.setAltitudePressure(raw.getAltitudePressure());
-        data.setAltitudeGeodetic(raw.getAltitudeGeodetic());
-        data.setHeight(raw.getHeight());
-        data.setHorizontalAccuracy(raw.horizontalAccuracy);
-        data.setVerticalAccuracy(raw.verticalAccuracy);
-        data.setBaroAccuracy(raw.baroAccuracy);
-        data.setSpeedAccuracy(raw.speedAccuracy);
-        data.setLocationTimestamp(raw.timestamp);
-        data.setTimeAccuracy(raw.getTimeAccuracy());
-        data.setDistance(raw.distance);
-        ac.location.setValue(data);
-    }
-
-    private void handleAuthentication(AircraftObject ac, OpenDroneIdParser.Message<OpenDroneIdParser.Authentication> message) {
-        OpenDroneIdParser.Authentication raw = message.payload;
-        AuthenticationData data = new AuthenticationData();
-        data.setMsgCounter(message.msgCounter);
-        data.setTimestamp(message.timestamp);
-
-        data.setAuthType(raw.authType);
-        data.setAuthDataPage(raw.authDataPage);
-        if (raw.authDataPage == 0) {
-            data.setAuthLastPageIndex(raw.authLastPageIndex);
-            data.setAuthLength(raw.authLength);
-            data.setAuthTimestamp(raw.authTimestamp);
-        }
-        data.setAuthData(raw.authData);
-        ac.authentication.setValue(ac.combineAuthentication(data));
-    }
-
-    private void handleSelfID(AircraftObject ac, OpenDroneIdParser.Message<OpenDroneIdParser.SelfID> message) {
-        OpenDroneIdParser.SelfID raw = message.payload;
-        SelfIdData data = new SelfIdData();
-        data.setMsgCounter(message.msgCounter);
-        data.setTimestamp(message.timestamp);
-
-        data.setDescriptionType(raw.descriptionType);
-        data.setOperationDescription(raw.operationDescription);
-        ac.selfid.setValue(data);
-    }
-
-    private void handleSystem(AircraftObject ac, OpenDroneIdParser.Message<OpenDroneIdParser.SystemMsg> message) {
-        OpenDroneIdParser.SystemMsg raw = message.payload;
-        SystemData data = new SystemData();
-        data.setMsgCounter(message.msgCounter);
-        data.setTimestamp(message.timestamp);
-
-        data.setOperatorLocationType(raw.operatorLocationType);
-        data.setClassificationType(raw.classificationType);
-        data.setOperatorLatitude(raw.getLatitude());
-        data.setOperatorLongitude(raw.getLongitude());
-        data.setAreaCount(raw.areaCount);
-        data.setAreaRadius(raw.getAreaRadius());
-        data.setAreaCeiling(raw.getAreaCeiling());
-        data.setAreaFloor(raw.getAreaFloor());
-        data.setCategory(raw.category);
-        data.setClassValue(raw.classValue);
-        data.setOperatorAltitudeGeo(raw.getOperatorAltitudeGeo());
-        data.setSystemTimestamp(raw.systemTimestamp);
-        ac.system.setValue(data);
-    }
-
-    private void handleOperatorID(AircraftObject ac, OpenDroneIdParser.Message<OpenDroneIdParser.OperatorID> message) {
-        OpenDroneIdParser.OperatorID raw = message.payload;
-        OperatorIdData data = new OperatorIdData();
-        data.setMsgCounter(message.msgCounter);
-        data.setTimestamp(message.timestamp);
-
-        data.setOperatorIdType(raw.operatorIdType);
-        data.setOperatorId(raw.operatorId);
-        ac.operatorid.setValue(data);
-    }
-
-    private void handleMessagePack(AircraftObject ac, OpenDroneIdParser.Message<OpenDroneIdParser.MessagePack> message,
-                                   long timestamp, int msgCounter) {
-        OpenDroneIdParser.MessagePack raw = message.payload;
-        if (raw == null)
+    private void handleLocation(AircraftObject ac, byte[] raw, int offset, long timestamp, int msgCounter) {
+        LocationData data = ac.getLocation();
+        data.setMsgCounter(msgCounter);
+        data.setTimestamp(timestamp);
+        ac.setLocationFingerprint(OpenDroneIdParser.fingerprint(raw, offset));
+        OpenDroneIdParser.decodeLocation(raw, offset, data);
+        // The distance to the drone is worked out lazily, only if the UI asks for it.
+        data.setReceiver(receiverLocation);
+        ac.markDirty(AircraftSnapshot.LOCATION);
+    }
+
+    private void handleAuthentication(AircraftObject ac, byte[] raw, int offset, long timestamp, int msgCounter) {
+        AuthenticationData data = ac.getAuthPage();
+        data.setMsgCounter(msgCounter);
+        data.setTimestamp(timestamp);
+        OpenDroneIdParser.decodeAuthentication(raw, offset, data, ac.getAuthPageData());
+        ac.combineAuthentication(data);
+        if (ac.isAuthSetComplete())
+            AuthVerification.verify(ac);
+        ac.markDirty(AircraftSnapshot.AUTHENTICATION);
+    }
+
+    private void handleSelfID(AircraftObject ac, byte[] raw, int offset, long timestamp, int msgCounter) {
+        SelfIdData data = ac.getSelfID();
+        data.setMsgCounter(msgCounter);
+        data.setTimestamp(timestamp);
+        long fingerprint = OpenDroneIdParser.fingerprint(raw, offset);
+        if (fingerprint == ac.getSelfIdFingerprint())
+            return;
+        ac.setSelfIdFingerprint(fingerprint);
+        OpenDroneIdParser.decodeSelfId(raw, offset, data);
+        ac.markDirty(AircraftSnapshot.SELF_ID);
+    }
+
+    private void handleSystem(AircraftObject ac, byte[] raw, int offset, long timestamp, int msgCounter) {
+        SystemData data = ac.getSystem();
+        data.setMsgCounter(msgCounter);
+        data.setTimestamp(timestamp);
+        long fingerprint = OpenDroneIdParser.fingerprint(raw, offset);
+        if (fingerprint == ac.getSystemFingerprint())
             return;
+        ac.setSystemFingerprint(fingerprint);
+        OpenDroneIdParser.decodeSystem(raw, offset, data);
+        ac.markDirty(AircraftSnapshot.SYSTEM);
+    }
 
-        if (raw.messageSize != Constants.MAX_MESSAGE_SIZE ||
-            raw.messagesInPack <= 0 ||
-            raw.messagesInPack > Constants.MAX_MESSAGES_IN_PACK)
+    private void handleOperatorID(AircraftObject ac, byte[] raw, int offset, long timestamp, int msgCounter) {
+        OperatorIdData data = ac.getOperatorID();
+        data.setMsgCounter(msgCounter);
+        data.setTimestamp(timestamp);
+        long fingerprint = OpenDroneIdParser.fingerprint(raw, offset);
+        if (fingerprint == ac.getOperatorIdFingerprint())
             return;
+        ac.setOperatorIdFingerprint(fingerprint);
+        OpenDroneIdParser.decodeOperatorId(raw, offset, data);
+        ac.markDirty(AircraftSnapshot.OPERATOR_ID);
+    }
+
+    private void handleMessagePack(AircraftObject ac, byte[] data, int offset, int length,
+                                   long timestamp, int msgCounter) {
+        int messagesInPack = OpenDroneIdParser.validatePack(data, offset, length);
 
-        for (int i = 0; i < raw.messagesInPack; i++) {
-            int offset = i*raw.messageSize;
-            byte[] data = Arrays.copyOfRange(raw.messages, offset, offset + raw.messageSize);
-            OpenDroneIdParser.Message<?> subMessage =
-                    OpenDroneIdParser.parseMessage(data, 0, timestamp, receiverLocation, msgCounter);
-            if (subMessage == null)
+        int subOffset = offset + OpenDroneIdParser.PACK_MESSAGES_OFFSET;
+        for (int i = 0; i < messagesInPack; i++, subOffset += Constants.MAX_MESSAGE_SIZE) {
+            OpenDroneIdParser.Type type = OpenDroneIdParser.type(data, subOffset);
+            if (type == null)
                 return;
 
-            handleMessages(ac, subMessage);
+            handleMessage(ac, type, data, subOffset, timestamp, msgCounter);
         }
     }
 }
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2025 Ken Taylor
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+package org.opendroneid.android.bluetooth;
+
+import org.ncssar.rid2caltopo.data.CtDroneSpec;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/** OpenDroneIdIngestQueue
+ * Single-producer/single-consumer rings of preallocated frames between the scanner callbacks and
+ * the data manager's ingest thread.  The scanners deliver all of their callbacks on the main
+ * thread, which is the one producer: it claims the next free frame, copies the raw bytes and
+ * receive info into it and publishes it.  The ingest thread is the one consumer and drains
+ * published frames in batches.  When a ring is full the new frame is dropped and counted
+ * rather than blocking the scanner callback.
+ *
+ * There is a ring per priority lane.  Frames that can carry a Location message go in
+ * LANE_LOCATION and the rest (Basic ID, Auth pages, Self ID, System, Operator ID) in
+ * LANE_STATIC, so a burst of Auth pages neither delays nor crowds out positions.  Each lane
+ * stays first in first out, and drainByPriority() shares the consumer's batches between them.
+ */
+class OpenDroneIdIngestQueue {
+    // Large enough for an extended advertisement or a WiFi vendor specific element.
+    static final int MAX_FRAME_SIZE = 256;
+
+    static final int KIND_BLUETOOTH = 0;
+    static final int KIND_WIFI_BEACON = 1;
+    static final int KIND_WIFI_NAN = 2;
+
+    static final int LANE_LOCATION = 0;
+    static final int LANE_STATIC = 1;
+    static final int LANE_COUNT = 2;
+    // The static lane's share of every batch, however busy the location lane is.
+    static final int STATIC_LANE_MIN_BATCH = 4;
+
+    static final class Frame {
+        int kind;
+        final byte[] data = new byte[MAX_FRAME_SIZE];
+        int length;
+        int messageOffset; // Bluetooth only, where findServiceDataMessage() found the message.
+        String address;   // Bluetooth device address or WiFi BSSID.
+        long addressLong; // WiFi beacon/NaN handle, Bluetooth is parsed from address on ingest.
+        int rssi;
+        long timeNano;
+        CtDroneSpec.TransportTypeEnum transportType;
+
+        // Anything past MAX_FRAME_SIZE is dropped, the decoder only looks at the first length bytes.
+        void copyFrom(byte[] src, int offset, int len) {
+            length = Math.min(len, MAX_FRAME_SIZE);
+            System.arraycopy(src, offset, data, 0, length);
+        }
+
+        // Copies from offset up to the buffer's limit, leaving src's position unchanged.
+        void copyFrom(ByteBuffer src, int offset) {
+            int position = src.position();
+            length = Math.min(src.limit() - offset, MAX_FRAME_SIZE);
+            src.position(offset);
+            src.get(data, 0, length);
+            src.position(position);
+        }
+    }
+
+    interface FrameHandler {
+        void onFrame(Frame frame);
+    }
+
+    private static final class Lane {
+        final Frame[] frames;
+        final int mask;
+        final AtomicLong head = new AtomicLong(); // next frame to be consumed
+        final AtomicLong tail = new AtomicLong(); // next frame to be published
+        volatile long droppedFrames;
+
+        Lane(int capacity) {
+            frames = new Frame[capacity];
+            for (int i = 0; i < capacity; i++) frames[i] = new Frame();
+            mask = capacity - 1;
+        }
+
+        boolean isEmpty() { return tail.get() == head.get(); }
+    }
+
+    private final Lane[] lanes = new Lane[LANE_COUNT];
+    private volatile Thread consumer;
+    private volatile boolean consumerWaiting;
+
+    /* capacity is per lane. */
+    OpenDroneIdIngestQueue(int capacity) {
+        if (Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("capacity must be a power of 2");
+        for (int i = 0; i < LANE_COUNT; i++) lanes[i] = new Lane(capacity);
+    }
+
+    long getDroppedFrames() {
+        long dropped = 0;
+        for (Lane lane : lanes) dropped += lane.droppedFrames;
+        return dropped;
+    }
+
+    long getDroppedFrames(int lane) { return lanes[lane].droppedFrames; }
+
+    /* Producer side.  Returns the frame ahead places past the last one published in lane to fill
+     * in, or null if the lane is full.  Filled frames aren't seen by the consumer until published.
+     */
+    Frame claim(int lane, int ahead) {
+        Lane l = lanes[lane];
+        long t = l.tail.get() + ahead;
+        if (t - l.head.get() > l.mask) {
+            l.droppedFrames++;
+            return null;
+        }
+        return l.frames[(int) (t & l.mask)];
+    }
+
+    /* Producer side.  Hands the next count frames claimed in lane to the consumer together. */
+    void publish(int lane, int count) {
+        if (0 == count) return;
+        Lane l = lanes[lane];
+        l.tail.set(l.tail.get() + count);
+        if (consumerWaiting) LockSupport.unpark(consumer);
+    }
+
+    /* Consumer side.  Passes up to maxFrames frames published in lane to handler, releasing each
+     * one back to the producer as soon as it has been handled.  Returns the number handled.  A
+     * frame whose handler throws is released all the same, so it can't wedge the lane, and the
+     * exception ends the drain.
+     */
+    int drain(int lane, FrameHandler handler, int maxFrames) {
+        Lane l = lanes[lane];
+        long h = l.head.get();
+        long available = l.tail.get() - h;
+        int count = (int) Math.min(available, maxFrames);
+        for (int i = 0; i < count; i++) {
+            try {
+                handler.onFrame(l.frames[(int) (h & l.mask)]);
+            } finally {
+                l.head.lazySet(++h);
+            }
+        }
+        return count;
+    }
+
+    /* Consumer side.  Drains up to batchSize frames from the location lane, then gives the static
+     * lane what's left of the batch, but always at least STATIC_LANE_MIN_BATCH, so a steady stream
+     * of positions delays identification and auth without starving them.  Returns the number
+     * handled.
+     */
+    int drainByPriority(FrameHandler handler, int batchSize) {
+        int handled = drain(LANE_LOCATION, handler, batchSize);
+        return handled + drain(LANE_STATIC, handler, Math.max(batchSize - handled, STATIC_LANE_MIN_BATCH));
+    }
+
+    /* Consumer side.  Blocks until a frame is published in any lane, the timeout expires or the
+     * consumer thread is interrupted.
+     */
+    void await(long timeoutMsec) {
+        consumer = Thread.currentThread();
+        consumerWaiting = true;
+        boolean empty = true;
+        for (Lane lane : lanes) empty &= lane.isEmpty();
+        if (empty)
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(timeoutMsec));
+        consumerWaiting = false;
+    }
+}
@@ -8,15 +8,24 @@ package org.opendroneid.android.bluetooth;
 
 import androidx.annotation.NonNull;
 
-import android.util.Log;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.util.Arrays;
 import org.opendroneid.android.Constants;
-
+import org.opendroneid.android.data.AuthenticationData;
+import org.opendroneid.android.data.Identification;
+import org.opendroneid.android.data.LocationData;
+import org.opendroneid.android.data.OperatorIdData;
+import org.opendroneid.android.data.SelfIdData;
+import org.opendroneid.android.data.SystemData;
+
+/** OpenDroneIdParser
+ * Flyweight decoder for the 25 byte ASTM F3411 messages.  Every field is read straight out of
+ * the received byte[] at the offset of the message header byte, so decoding a frame does not
+ * allocate.  The decodeXxx() methods fill a caller supplied record that is reused from one
+ * frame to the next (see AircraftObject).
+ *
+ * Multi-byte fields are little endian.
+ */
 public class OpenDroneIdParser {
     private static final String TAG = "OpenDroneIdParser";
-    private static final String DELIM = Constants.DELIM;
 
     public enum Type {
         BASIC_ID(0),
@@ -30,618 +39,319 @@ public class OpenDroneIdParser {
         Type(int id) { this.id = id; }
         public final int id;
 
-        public static Type fromId(int id) {
-            if (id == BASIC_ID.id) {
-                return BASIC_ID;
-            } else if (id == LOCATION.id) {
-                return LOCATION;
-            } else if (id == AUTH.id) {
-                return AUTH;
-            } else if (id == SELFID.id) {
-                return SELFID;
-            } else if (id == SYSTEM.id) {
-                return SYSTEM;
-            } else if (id == OPERATOR_ID.id) {
-                return OPERATOR_ID;
-            } else if (id == MESSAGE_PACK.id) {
-                return MESSAGE_PACK;
-            } else {
-                return null;
-            }
+        // The type is the upper nibble of the header byte, so a 16 entry table covers every id.
+        private static final Type[] ById = new Type[16];
+        static {
+            for (Type type : values()) ById[type.id] = type;
         }
-    }
-
-    public static class Header {
-        public Type type;
-        public int version;
 
-        @Override @NonNull
-        public String toString() {
-            return "Header{" +
-                    "type=" + type +
-                    ", version=" + version +
-                    '}';
+        public static Type fromId(int id) {
+            if (id < 0 || id >= ById.length) return null;
+            return ById[id];
         }
     }
 
-    public interface Payload {
-        String toCsvString();
-    }
-
     private static final double LAT_LONG_MULTIPLIER = 1e-7;
     private static final double SPEED_VERTICAL_MULTIPLIER = 0.5;
 
-    public static class BasicId implements Payload {
-        int idType;
-        int uaType;
-        final byte[] uasId = new byte[Constants.MAX_ID_BYTE_SIZE];
-
-        public static String csvHeader() {
-            return "idType" + DELIM
-                    + "uaType" + DELIM
-                    + "uasId" + DELIM;
-        }
-
-        @Override
-        public String toCsvString() {
-            return idType + DELIM
-                    + uaType + DELIM
-                    + new String(uasId) + DELIM;
-        }
-
-        @Override @NonNull
-        public String toString() {
-            return "BasicId{" +
-                    "idType=" + idType +
-                    ", uaType=" + uaType +
-                    ", uasId='" + Arrays.toString(uasId) + '\'' +
-                    '}';
-        }
+    // Offsets relative to the message header byte:
+    private static final int BASIC_ID_UAS_ID_OFFSET = 2;
+    private static final int AUTH_PAGE_ZERO_DATA_OFFSET = 8;
+    private static final int AUTH_PAGE_DATA_OFFSET = 2;
+    private static final int SELFID_DESCRIPTION_OFFSET = 2;
+    private static final int OPERATOR_ID_OFFSET = 2;
+
+    static int u8(byte[] b, int off) { return b[off] & 0xFF; }
+    static int u16(byte[] b, int off) { return (b[off] & 0xFF) | ((b[off + 1] & 0xFF) << 8); }
+    static int s32(byte[] b, int off) {
+        return (b[off] & 0xFF) | ((b[off + 1] & 0xFF) << 8) | ((b[off + 2] & 0xFF) << 16) | (b[off + 3] << 24);
     }
+    static long u32(byte[] b, int off) { return s32(b, off) & 0xFFFFFFFFL; }
 
-    public static class Location implements Payload {
-        int status;
-        int heightType;
-        int EWDirection;
-        int speedMult;
-        int Direction;
-        int speedHori;
-        int speedVert;
-        int droneLat;
-        int droneLon;
-        int altitudePressure;
-        int altitudeGeodetic;
-        int height;
-        int horizontalAccuracy;
-        int verticalAccuracy;
-        int baroAccuracy;
-        int speedAccuracy;
-        int timestamp;
-        int timeAccuracy;
-        float distance;
-
-        static double calcSpeed(int value, int mult) {
-            if (mult == 0)
-                return value * 0.25;
-            else
-                return (value * 0.75) + (255 * 0.25);
-        }
-
-        static double calcDirection(int value, int EW) {
-            if (EW == 0)
-                return value;
-            else
-                return value + 180;
-        }
-
-        double getDirection() { return calcDirection(Direction, EWDirection); }
-        double getSpeedHori() { return calcSpeed(speedHori, speedMult); }
-
-        double getSpeedVert() { return SPEED_VERTICAL_MULTIPLIER * speedVert; }
-
-        double getLatitude() {
-            return LAT_LONG_MULTIPLIER * droneLat;
-        }
-        double getLongitude() {
-            return LAT_LONG_MULTIPLIER * droneLon;
-        }
-
-        static double calcAltitude(int value) { return (double) value / 2 - 1000; }
-        double getAltitudePressure() { return calcAltitude(altitudePressure); }
-        double getAltitudeGeodetic() { return calcAltitude(altitudeGeodetic); }
-        double getHeight() { return calcAltitude(height); }
-
-        double getTimeAccuracy() { return timeAccuracy * 0.1; }
-
-        public static String csvHeader() {
-            return "status" + DELIM
-                    + "heightType" + DELIM
-                    + "EWDirection" + DELIM
-                    + "speedMult" + DELIM
-                    + "direction" + DELIM
-                    + "speedHori" + DELIM
-                    + "speedVert" + DELIM
-                    + "droneLat" + DELIM
-                    + "droneLon" + DELIM
-                    + "altitudePressure" + DELIM
-                    + "altitudeGeodetic" + DELIM
-                    + "height" + DELIM
-                    + "horizontalAccuracy" + DELIM
-                    + "verticalAccuracy" + DELIM
-                    + "baroAccuracy" + DELIM
-                    + "speedAccuracy" + DELIM
-                    + "timestamp" + DELIM
-                    + "timeAccuracy" + DELIM
-                    + "distance" + DELIM;
-        }
-
-        @Override
-        public String toCsvString() {
-            return status + DELIM
-                    + heightType + DELIM
-                    + EWDirection + DELIM
-                    + speedMult + DELIM
-                    + Direction + DELIM
-                    + speedHori + DELIM
-                    + speedVert + DELIM
-                    + droneLat + DELIM
-                    + droneLon + DELIM
-                    + altitudePressure + DELIM
-                    + altitudeGeodetic + DELIM
-                    + height + DELIM
-                    + horizontalAccuracy + DELIM
-                    + verticalAccuracy + DELIM
-                    + baroAccuracy + DELIM
-                    + speedAccuracy + DELIM
-                    + timestamp + DELIM
-                    + timeAccuracy + DELIM
-                    + distance + DELIM;
-        }
-        
-        @Override @NonNull
-        public String toString() {
-            return "Location{" +
-                    "status=" + status +
-                    ", heightType=" + heightType +
-                    ", EWDirection=" + EWDirection +
-                    ", speedMult=" + speedMult +
-                    ", direction=" + Direction +
-                    ", speedHori=" + speedHori +
-                    ", speedVert=" + speedVert +
-                    ", droneLat=" + droneLat +
-                    ", droneLon=" + droneLon +
-                    ", altitudePressure=" + altitudePressure +
-                    ", altitudeGeodetic=" + altitudeGeodetic +
-                    ", height=" + height +
-                    ", horizontalAccuracy=" + horizontalAccuracy +
-                    ", verticalAccuracy=" + verticalAccuracy +
-                    ", baroAccuracy=" + baroAccuracy +
-                    ", speedAccuracy=" + speedAccuracy +
-                    ", timestamp=" + timestamp +
-                    ", timeAccuracy=" + timeAccuracy +
-                    ", distance=" + distance +
-                    '}';
-        }
+    /* Header */
+    static boolean hasMessage(byte[] b, int off, int len) {
+        return off >= 0 && len <= b.length && len >= off + Constants.MAX_MESSAGE_SIZE;
     }
-
-    public static class Authentication implements Payload {
-        int authType;
-        int authDataPage;
-        int authLastPageIndex;
-        int authLength;
-        long authTimestamp;
-        final byte[] authData = new byte[Constants.MAX_AUTH_DATA];
-
-        public int getAuthDataPage() { return authDataPage; }
-
-        public static String csvHeader() {
-            return "authType" + DELIM
-                    + "authDataPage" + DELIM
-                    + "authLastPageIndex" + DELIM
-                    + "authLength" + DELIM
-                    + "authTimestamp" + DELIM
-                    + "authData" + DELIM;
-        }
-
-        private String authDataToString() {
-            StringBuilder sb = new StringBuilder();
-            for (byte authDatum : authData) {
-                sb.append(String.format("%02X ", authDatum));
-            }
-            return sb.toString();
-        }
-
-        @Override
-        public String toCsvString() {
-            return authType + DELIM
-                    + authDataPage + DELIM
-                    + authLastPageIndex + DELIM
-                    + authLength + DELIM
-                    + authTimestamp + DELIM
-                    + authDataToString() + DELIM;
-        }
-
-        @Override @NonNull
-        public String toString() {
-            return "Authentication{" +
-                    "authType=" + authType +
-                    ", authDataPage=" + authDataPage +
-                    ", authLastPageIndex=" + authLastPageIndex +
-                    ", authLength=" + authLength +
-                    ", authTimestamp=" + authTimestamp +
-                    ", authData='" + Arrays.toString(authData) + '\'' +
-                    '}';
-        }
+    static int typeId(byte[] b, int off) { return (b[off] & 0xF0) >> 4; }
+    static Type type(byte[] b, int off) { return Type.fromId(typeId(b, off)); }
+    static int version(byte[] b, int off) { return b[off] & 0x0F; }
+
+    /* Basic ID */
+    static int basicIdType(byte[] b, int off) { return (b[off + 1] & 0xF0) >> 4; }
+    static int basicIdUaType(byte[] b, int off) { return b[off + 1] & 0x0F; }
+
+    /* Location */
+    static int locationStatus(byte[] b, int off) { return (b[off + 1] & 0xF0) >> 4; }
+    static int locationHeightType(byte[] b, int off) { return (b[off + 1] & 0x04) >> 2; }
+    static int locationEWDirection(byte[] b, int off) { return (b[off + 1] & 0x02) >> 1; }
+    static int locationSpeedMult(byte[] b, int off) { return b[off + 1] & 0x01; }
+    static double locationDirection(byte[] b, int off) {
+        int direction = u8(b, off + 2);
+        return (0 == locationEWDirection(b, off)) ? direction : direction + 180;
     }
-
-    public static class SelfID implements Payload {
-        int descriptionType;
-        final byte[] operationDescription = new byte[Constants.MAX_STRING_BYTE_SIZE];
-
-        public static String csvHeader() {
-            return "descriptionType" + DELIM
-                    + "operationDescription" + DELIM;
-        }
-
-        @Override
-        public String toCsvString() {
-            return descriptionType + DELIM
-                    + new String(operationDescription) + DELIM;
-        }
-
-        @Override @NonNull
-        public String toString() {
-            return "SelfID{" +
-                    "descriptionType=" + descriptionType +
-                    ", operationDescription='" + Arrays.toString(operationDescription) + '\'' +
-                    '}';
-        }
+    static double locationSpeedHori(byte[] b, int off) {
+        int value = u8(b, off + 3);
+        if (0 == locationSpeedMult(b, off))
+            return value * 0.25;
+        else
+            return (value * 0.75) + (255 * 0.25);
     }
-
-    public static class SystemMsg implements Payload {
-        int operatorLocationType;
-        int classificationType;
-        int operatorLatitude;
-        int operatorLongitude;
-        int areaCount;
-        int areaRadius;
-        int areaCeiling;
-        int areaFloor;
-        int category;
-        int classValue;
-        int operatorAltitudeGeo;
-        long systemTimestamp;
-
-        double getLatitude() {
-            return LAT_LONG_MULTIPLIER * operatorLatitude;
-        }
-        double getLongitude() {
-            return LAT_LONG_MULTIPLIER * operatorLongitude;
-        }
-
-        int getAreaRadius() { return areaRadius * 10; }
-        static double calcAltitude(int value) { return (double) value / 2 - 1000; }
-        double getAreaCeiling() { return calcAltitude(areaCeiling); }
-        double getAreaFloor() { return calcAltitude(areaFloor); }
-        double getOperatorAltitudeGeo() { return calcAltitude(operatorAltitudeGeo); }
-
-        public static String csvHeader() {
-            return "operatorLocationType" + DELIM
-                    + "classificationType" + DELIM
-                    + "operatorLatitude" + DELIM
-                    + "operatorLongitude" + DELIM
-                    + "areaCount" + DELIM
-                    + "areaRadius" + DELIM
-                    + "areaCeiling" + DELIM
-                    + "areaFloor" + DELIM
-                    + "category" + DELIM
-                    + "classValue" + DELIM
-                    + "operatorAltitudeGeo" + DELIM
-                    + "systemTimestamp" + DELIM;
-        }
-
-        @Override
-        public String toCsvString() {
-            return operatorLocationType + DELIM
-                    + classificationType + DELIM
-                    + operatorLatitude + DELIM
-                    + operatorLongitude + DELIM
-                    + areaCount + DELIM
-                    + areaRadius + DELIM
-                    + areaCeiling + DELIM
-                    + areaFloor + DELIM
-                    + category + DELIM
-                    + classValue + DELIM
-                    + operatorAltitudeGeo + DELIM
-                    + systemTimestamp + DELIM;
-        }
-
-        @Override @NonNull
-        public String toString() {
-            return "PilotLocation{" +
-                    "operatorLocationType=" + operatorLocationType +
-                    ", classificationType=" + classificationType +
-                    ", operatorLatitude=" + operatorLatitude +
-                    ", operatorLongitude=" + operatorLongitude +
-                    ", areaCount=" + areaCount +
-                    ", areaRadius=" + areaRadius +
-                    ", areaCeiling=" + areaCeiling +
-                    ", areaFloor=" + areaFloor +
-                    ", category=" + category +
-                    ", class=" + classValue +
-                    ", operatorAltitudeGeo=" + operatorAltitudeGeo +
-                    ", systemTimestamp=" + systemTimestamp +
-                    '}';
-        }
+    static double locationSpeedVert(byte[] b, int off) { return SPEED_VERTICAL_MULTIPLIER * b[off + 4]; }
+    static int locationLatRaw(byte[] b, int off) { return s32(b, off + 5); }
+    static int locationLonRaw(byte[] b, int off) { return s32(b, off + 9); }
+    static double locationLatitude(byte[] b, int off) { return LAT_LONG_MULTIPLIER * locationLatRaw(b, off); }
+    static double locationLongitude(byte[] b, int off) { return LAT_LONG_MULTIPLIER * locationLonRaw(b, off); }
+    static double locationAltitudePressure(byte[] b, int off) { return calcAltitude(u16(b, off + 13)); }
+    static double locationAltitudeGeodetic(byte[] b, int off) { return calcAltitude(u16(b, off + 15)); }
+    static double locationHeight(byte[] b, int off) { return calcAltitude(u16(b, off + 17)); }
+    static int locationHorizontalAccuracy(byte[] b, int off) { return b[off + 19] & 0x0F; }
+    static int locationVerticalAccuracy(byte[] b, int off) { return (b[off + 19] & 0xF0) >> 4; }
+    static int locationBaroAccuracy(byte[] b, int off) { return (b[off + 20] & 0xF0) >> 4; }
+    static int locationSpeedAccuracy(byte[] b, int off) { return b[off + 20] & 0x0F; }
+    static int locationTimestamp(byte[] b, int off) { return u16(b, off + 21); }
+    static double locationTimeAccuracy(byte[] b, int off) { return (b[off + 23] & 0x0F) * 0.1; }
+
+    /* Authentication */
+    static int authType(byte[] b, int off) { return (b[off + 1] & 0xF0) >> 4; }
+    static int authDataPage(byte[] b, int off) { return b[off + 1] & 0x0F; }
+    static int authLastPageIndex(byte[] b, int off) { return u8(b, off + 2); }
+    static int authLength(byte[] b, int off) { return u8(b, off + 3); }
+    static long authTimestamp(byte[] b, int off) { return u32(b, off + 4); }
+
+    /* Self ID */
+    static int selfIdDescriptionType(byte[] b, int off) { return u8(b, off + 1); }
+
+    /* System */
+    static int systemOperatorLocationType(byte[] b, int off) { return b[off + 1] & 0x03; }
+    static int systemClassificationType(byte[] b, int off) { return (b[off + 1] & 0x1C) >> 2; }
+    static double systemOperatorLatitude(byte[] b, int off) { return LAT_LONG_MULTIPLIER * s32(b, off + 2); }
+    static double systemOperatorLongitude(byte[] b, int off) { return LAT_LONG_MULTIPLIER * s32(b, off + 6); }
+    static int systemAreaCount(byte[] b, int off) { return u16(b, off + 10); }
+    static int systemAreaRadius(byte[] b, int off) { return u8(b, off + 12) * 10; }
+    static double systemAreaCeiling(byte[] b, int off) { return calcAltitude(u16(b, off + 13)); }
+    static double systemAreaFloor(byte[] b, int off) { return calcAltitude(u16(b, off + 15)); }
+    static int systemCategory(byte[] b, int off) { return (b[off + 17] & 0xF0) >> 4; }
+    static int systemClassValue(byte[] b, int off) { return b[off + 17] & 0x0F; }
+    static double systemOperatorAltitudeGeo(byte[] b, int off) { return calcAltitude(u16(b, off + 18)); }
+    static long systemTimestamp(byte[] b, int off) { return u32(b, off + 20); }
+
+    /* Operator ID */
+    static int operatorIdType(byte[] b, int off) { return u8(b, off + 1); }
+
+    static double calcAltitude(int value) { return (double) value / 2 - 1000; }
+
+    /* 64 bit FNV-1a hash over the whole message, used to spot a repeat of the previous message. */
+    static long fingerprint(byte[] b, int off) {
+        return fingerprint(b, off, Constants.MAX_MESSAGE_SIZE);
     }
 
-    public static class OperatorID implements Payload {
-        int operatorIdType;
-        final byte[] operatorId = new byte[Constants.MAX_ID_BYTE_SIZE];
-
-        public static String csvHeader() {
-            return "operatorIdType" + DELIM
-                    + "operatorId" + DELIM;
-        }
-
-        @Override
-        public String toCsvString() {
-            return operatorIdType + DELIM
-                    + new String(operatorId) + DELIM;
-        }
-        @Override @NonNull
-        public String toString() {
-            return "OperatorID{" +
-                    "operatorIdType=" + operatorIdType +
-                    ", operatorId='" + Arrays.toString(operatorId) + '\'' +
-                    '}';
-        }
-    }
-
-    public static class MessagePack implements Payload {
-        int messageSize;
-        int messagesInPack;
-        final byte[] messages = new byte[Constants.MAX_MESSAGE_PACK_SIZE];
-
-        @Override @NonNull
-        public String toString() {
-            return "MessagePack{" +
-                    "messageSize=" + messageSize +
-                    ", messagesInPack=" + messagesInPack +
-                    ", messages='" + Arrays.toString(messages) + '\'' +
-                    '}';
-        }
-
-        @Override public String toCsvString() { return null; }
-    }
-
-    public static class Message<T extends Payload> implements Comparable<Message<T>> {
-        final int msgCounter;
-        final long timestamp;
-        public final Header header;
-        public final T payload;
-
-        Message(Header header, T payload, long timestamp, int msgCounter) {
-            this.msgCounter = msgCounter;
-            this.header = header;
-            this.payload = payload;
-            this.timestamp = timestamp;
-        }
-
-        @Override
-        public int compareTo(@NonNull Message o)
-        {
-            if (this.header.type == Type.AUTH && o.header.type == Type.AUTH ) {
-                Authentication authThis = (OpenDroneIdParser.Authentication) this.payload;
-                Authentication authO = (OpenDroneIdParser.Authentication) o.payload;
-                return (authThis.authDataPage - authO.authDataPage);
-            } else {
-                return this.header.type.compareTo(o.header.type);
-            }
+    static long fingerprint(byte[] b, int off, int len) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = off; i < off + len; i++) {
+            hash ^= b[i] & 0xFF;
+            hash *= 0x100000001b3L;
         }
+        return hash;
     }
 
-    static Message<Payload> parseData(byte[] payload, int offset, long timestamp,
-                                      android.location.Location receiverLocation) {
-        if (offset <= 0 || payload.length < offset + Constants.MAX_MESSAGE_SIZE)
-            return null;
-
-        int msgCounter = payload[offset - 1] & 0xFF;
-        return parseMessage(payload, offset, timestamp, receiverLocation, msgCounter);
+    private static final int MAC_ADDRESS_DIGITS = 12;
+
+    /* Packs a "AA:BB:CC:DD:EE:FF" style MAC address into the low 48 bits of a long, skipping
+     * separators.  Returns -1 if a character other than a hex digit or separator is found, or if
+     * there aren't exactly 12 hex digits.
+     */
+    static long parseMacAddress(String mac) {
+        long value = 0;
+        int digits = 0;
+        for (int i = 0, n = mac.length(); i < n; i++) {
+            char c = mac.charAt(i);
+            int digit;
+            if (c >= '0' && c <= '9') digit = c - '0';
+            else if (c >= 'a' && c <= 'f') digit = c - 'a' + 10;
+            else if (c >= 'A' && c <= 'F') digit = c - 'A' + 10;
+            else if (c == ':' || c == '-') continue;
+            else return -1;
+            value = (value << 4) | digit;
+            digits++;
+        }
+        return digits == MAC_ADDRESS_DIGITS ? value : -1;
     }
 
-    static Message<Payload> parseMessage(byte[] payload, int offset, long timestamp,
-                                         android.location.Location receiverLocation, int msgCounter) {
-        if (payload.length < offset + Constants.MAX_MESSAGE_SIZE)
-            return null;
-
-        ByteBuffer byteBuffer = ByteBuffer.wrap(payload, offset, Constants.MAX_MESSAGE_SIZE);
-        byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
-
-        Header header = new Header();
-        int b = byteBuffer.get() & 0xFF;
-        int type = (b & 0xF0) >> 4;
-        header.type = Type.fromId(type);
-        if (header.type == null) {
-            Log.e(TAG, "Header type unknown");
-            return null;
-        }
-        header.version = b & 0x0F;
-
-        Payload payloadObj = null;
-
-        switch (header.type) {
-            case BASIC_ID:
-                payloadObj = parseBasicId(byteBuffer);
-                break;
-            case LOCATION:
-                payloadObj = parseLocation(byteBuffer, receiverLocation);
-                break;
-            case AUTH:
-                payloadObj = parseAuthentication(byteBuffer);
-                break;
-            case SELFID:
-                payloadObj = parseSelfID(byteBuffer);
-                break;
-            case SYSTEM:
-                payloadObj = parseSystem(byteBuffer);
-                break;
-            case OPERATOR_ID:
-                payloadObj = parseOperatorID(byteBuffer);
-                break;
-            case MESSAGE_PACK:
-                payloadObj = parseMessagePack(payload, offset);
-                break;
-            default:
-                Log.w(TAG, "Received unhandled message type: id=" + type);
-
-        }
-        Message<Payload> message = new Message<>(header, payloadObj, timestamp, msgCounter);
-        return message;
+    /* 64 bit FNV-1a hash of the UAS ID field of a Basic ID message, or 0 if the field is empty.
+     * The same drone sends the same UAS ID on every transport and whatever its MAC is, so this
+     * is what frames are resolved to an aircraft by.
+     */
+    static long basicIdUasIdKey(byte[] b, int off) {
+        long hash = 0xcbf29ce484222325L;
+        boolean empty = true;
+        int start = off + BASIC_ID_UAS_ID_OFFSET;
+        for (int i = start; i < start + Constants.MAX_ID_BYTE_SIZE; i++) {
+            if (b[i] != 0) empty = false;
+            hash ^= b[i] & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        return empty ? 0 : hash;
     }
 
-    private static BasicId parseBasicId(ByteBuffer byteBuffer) {
-        BasicId basicId = new BasicId();
-
-        int type = byteBuffer.get();
-        basicId.idType = (type & 0xF0) >> 4;
-        basicId.uaType = type & 0x0F;
-        byteBuffer.get(basicId.uasId, 0,Constants.MAX_ID_BYTE_SIZE);
-        return basicId;
+    static void decodeBasicId(byte[] b, int off, @NonNull Identification data) {
+        data.setUaType(basicIdUaType(b, off));
+        data.setIdType(basicIdType(b, off));
+        data.setUasId(b, off + BASIC_ID_UAS_ID_OFFSET);
     }
 
-    private static Location parseLocation(ByteBuffer byteBuffer,
-                                          android.location.Location receiverLocation) {
-        Location location = new Location();
-
-        int b = byteBuffer.get();
-        location.status = (b & 0xF0) >> 4;
-        location.heightType = (b & 0x04) >> 2;
-        location.EWDirection = (b & 0x02) >> 1;
-        location.speedMult = b & 0x01;
-
-        location.Direction = byteBuffer.get() & 0xFF;
-        location.speedHori = byteBuffer.get() & 0xFF;
-        location.speedVert = byteBuffer.get();
-
-        location.droneLat = byteBuffer.getInt();
-        location.droneLon = byteBuffer.getInt();
-
-        location.altitudePressure = byteBuffer.getShort() & 0xFFFF;
-        location.altitudeGeodetic = byteBuffer.getShort() & 0xFFFF;
-        location.height = byteBuffer.getShort() & 0xFFFF;
-
-        int horiVertAccuracy = byteBuffer.get();
-        location.horizontalAccuracy = horiVertAccuracy & 0x0F;
-        location.verticalAccuracy = (horiVertAccuracy & 0xF0) >> 4;
-        int speedBaroAccuracy = byteBuffer.get();
-        location.baroAccuracy = (speedBaroAccuracy & 0xF0) >> 4;
-        location.speedAccuracy = speedBaroAccuracy & 0x0F;
-        location.timestamp = byteBuffer.getShort() & 0xFFFF;
-        location.timeAccuracy = byteBuffer.get() & 0x0F;
-
-        // Use an older retrieved receiver location to calculate the distance to the drone
-        if (location.droneLat != 0 && location.droneLon != 0) {
-            android.location.Location droneLoc = new android.location.Location("");
-            droneLoc.setLatitude(location.getLatitude());
-            droneLoc.setLongitude(location.getLongitude());
-            if (receiverLocation != null)
-                location.distance = receiverLocation.distanceTo(droneLoc);
-        }
-
-        return location;
+    static void decodeLocation(byte[] b, int off, @NonNull LocationData data) {
+        data.setStatus(locationStatus(b, off));
+        data.setHeightType(locationHeightType(b, off));
+        data.setDirection(locationDirection(b, off));
+        data.setSpeedHorizontal(locationSpeedHori(b, off));
+        data.setSpeedVertical(locationSpeedVert(b, off));
+        data.setLatitude(locationLatitude(b, off));
+        data.setLongitude(locationLongitude(b, off));
+        data.setAltitudePressure(locationAltitudePressure(b, off));
+        data.setAltitudeGeodetic(locationAltitudeGeodetic(b, off));
+        data.setHeight(locationHeight(b, off));
+        data.setHorizontalAccuracy(locationHorizontalAccuracy(b, off));
+        data.setVerticalAccuracy(locationVerticalAccuracy(b, off));
+        data.setBaroAccuracy(locationBaroAccuracy(b, off));
+        data.setSpeedAccuracy(locationSpeedAccuracy(b, off));
+        data.setLocationTimestamp(locationTimestamp(b, off));
+        data.setTimeAccuracy(locationTimeAccuracy(b, off));
     }
 
-    private static Authentication parseAuthentication(ByteBuffer byteBuffer) {
-        Authentication authentication = new Authentication();
-
-        int type = byteBuffer.get();
-        authentication.authType = (type & 0xF0) >> 4;
-        authentication.authDataPage = type & 0x0F;
-
-        int offset = 0;
-        int amount = Constants.MAX_AUTH_PAGE_ZERO_SIZE;
-        if (authentication.authDataPage == 0) {
-            authentication.authLastPageIndex = byteBuffer.get() & 0xFF;
-            authentication.authLength = byteBuffer.get() & 0xFF;
-            authentication.authTimestamp = byteBuffer.getInt() & 0xFFFFFFFFL;
+    /* The page is written into data's authData at its final position within the combined
+     * signature, ready for AircraftObject.combineAuthentication().  authData must hold
+     * MAX_AUTH_DATA bytes.  The page number is a 4 bit field, so it is always below
+     * MAX_AUTH_DATA_PAGES and even the last page fits; that is why there is no range check on it.
+     */
+    static void decodeAuthentication(byte[] b, int off, @NonNull AuthenticationData data, @NonNull byte[] authData) {
+        int page = authDataPage(b, off);
+        data.setAuthType(authType(b, off));
+        data.setAuthDataPage(page);
+
+        int srcOffset;
+        int dstOffset;
+        int amount;
+        if (0 == page) {
+            int lastPageIndex = authLastPageIndex(b, off);
+            int length = authLength(b, off);
+            long timestamp = authTimestamp(b, off);
 
             // For an explanation, please see the description for struct ODID_Auth_data in:
             // https://github.com/opendroneid/opendroneid-core-c/blob/master/libopendroneid/opendroneid.h
-            int len = authentication.authLastPageIndex * Constants.MAX_AUTH_PAGE_NON_ZERO_SIZE +
+            int len = lastPageIndex * Constants.MAX_AUTH_PAGE_NON_ZERO_SIZE +
                     Constants.MAX_AUTH_PAGE_ZERO_SIZE;
-            if (authentication.authLastPageIndex >= Constants.MAX_AUTH_DATA_PAGES ||
-                    authentication.authLength > len) {
-                authentication.authLastPageIndex = 0;
-                authentication.authLength = 0;
-                authentication.authTimestamp = 0;
+            if (lastPageIndex >= Constants.MAX_AUTH_DATA_PAGES || length > len) {
+                lastPageIndex = 0;
+                length = 0;
+                timestamp = 0;
             } else {
                 // Display both normal authentication data and any possible additional data
-                authentication.authLength = len;
+                length = len;
             }
+            data.setAuthLastPageIndex(lastPageIndex);
+            data.setAuthLength(length);
+            data.setAuthTimestamp(timestamp);
+            srcOffset = off + AUTH_PAGE_ZERO_DATA_OFFSET;
+            dstOffset = 0;
+            amount = Constants.MAX_AUTH_PAGE_ZERO_SIZE;
         } else {
-            offset = Constants.MAX_AUTH_PAGE_ZERO_SIZE +
-                    (authentication.authDataPage - 1) * Constants.MAX_AUTH_PAGE_NON_ZERO_SIZE;
+            srcOffset = off + AUTH_PAGE_DATA_OFFSET;
+            dstOffset = Constants.MAX_AUTH_PAGE_ZERO_SIZE + (page - 1) * Constants.MAX_AUTH_PAGE_NON_ZERO_SIZE;
             amount = Constants.MAX_AUTH_PAGE_NON_ZERO_SIZE;
         }
-        if (authentication.authDataPage >= 0 && authentication.authDataPage < Constants.MAX_AUTH_DATA_PAGES)
-            for (int i = offset; i < offset + amount; i++)
-                authentication.authData[i] = byteBuffer.get();
-        return authentication;
+        System.arraycopy(b, srcOffset, authData, dstOffset, amount);
+        data.setAuthData(authData);
     }
 
-    private static SelfID parseSelfID(ByteBuffer byteBuffer) {
-        SelfID selfID = new SelfID();
-        selfID.descriptionType = byteBuffer.get() & 0xFF;
-        byteBuffer.get(selfID.operationDescription, 0, Constants.MAX_STRING_BYTE_SIZE);
-        return selfID;
+    static void decodeSelfId(byte[] b, int off, @NonNull SelfIdData data) {
+        data.setDescriptionType(selfIdDescriptionType(b, off));
+        data.setOperationDescription(b, off + SELFID_DESCRIPTION_OFFSET);
     }
 
-    private static SystemMsg parseSystem(ByteBuffer byteBuffer) {
-        SystemMsg s = new SystemMsg();
-
-        int b = byteBuffer.get();
-        s.operatorLocationType = b & 0x03;
-        s.classificationType = (b & 0x1C) >> 2;
-        s.operatorLatitude = byteBuffer.getInt();
-        s.operatorLongitude = byteBuffer.getInt();
-        s.areaCount = byteBuffer.getShort() & 0xFFFF;
-        s.areaRadius = byteBuffer.get() & 0xFF;
-        s.areaCeiling = byteBuffer.getShort() & 0xFFFF;
-        s.areaFloor = byteBuffer.getShort() & 0xFFFF;
-        b = byteBuffer.get();
-        s.category = (b & 0xF0) >> 4;
-        s.classValue = b & 0x0F;
-        s.operatorAltitudeGeo = byteBuffer.getShort() & 0xFFFF;
-        s.systemTimestamp = byteBuffer.getInt() & 0xFFFFFFFFL;
-        return s;
+    static void decodeSystem(byte[] b, int off, @NonNull SystemData data) {
+        data.setOperatorLocationType(systemOperatorLocationType(b, off));
+        data.setClassificationType(systemClassificationType(b, off));
+        data.setOperatorLatitude(systemOperatorLatitude(b, off));
+        data.setOperatorLongitude(systemOperatorLongitude(b, off));
+        data.setAreaCount(systemAreaCount(b, off));
+        data.setAreaRadius(systemAreaRadius(b, off));
+        data.setAreaCeiling(systemAreaCeiling(b, off));
+        data.setAreaFloor(systemAreaFloor(b, off));
+        data.setCategory(systemCategory(b, off));
+        data.setClassValue(systemClassValue(b, off));
+        data.setOperatorAltitudeGeo(systemOperatorAltitudeGeo(b, off));
+        data.setSystemTimestamp(systemTimestamp(b, off));
     }
 
-    private static OperatorID parseOperatorID(ByteBuffer byteBuffer) {
-        OperatorID operatorID = new OperatorID();
-        operatorID.operatorIdType = byteBuffer.get() & 0xFF;
-        byteBuffer.get(operatorID.operatorId, 0, Constants.MAX_ID_BYTE_SIZE);
-        return operatorID;
+    static void decodeOperatorId(byte[] b, int off, @NonNull OperatorIdData data) {
+        data.setOperatorIdType(operatorIdType(b, off));
+        data.setOperatorId(b, off + OPERATOR_ID_OFFSET);
     }
 
+    /* Bluetooth advertising data is a run of AD structures: a length byte (covering the type and
+     * value), the AD type and the value.  OpenDroneID sets the AD type to "Service Data - 16-bit
+     * UUID" with the ASTM Remote ID UUID 0xFFFA, followed by the application code 0x0D, the
+     * msgCounter and then the message.
+     */
+    private static final int AD_TYPE_SERVICE_DATA_16_BIT_UUID = 0x16;
+    private static final int ASTM_REMOTE_ID_UUID = 0xFFFA;
+    private static final int OPEN_DRONE_ID_APP_CODE = 0x0D;
+    // length, AD type, 2 byte UUID, app code and msgCounter precede the message.
+    private static final int AD_SERVICE_DATA_MESSAGE_OFFSET = 6;
+
+    /* Walk the AD structures in the first len bytes of b for the OpenDroneID service data, wherever
+     * it sits among the others.  Returns the offset of the message within b, or -1 if there is no
+     * OpenDroneID service data large enough to hold a message.
+     */
+    static int findServiceDataMessage(byte[] b, int len) {
+        int pos = 0;
+        while (pos < len) {
+            int adLength = u8(b, pos);
+            if (adLength == 0)
+                break; // The rest is padding.
+            int adEnd = pos + 1 + adLength;
+            if (adEnd > len)
+                break;
+            if (adLength >= AD_SERVICE_DATA_MESSAGE_OFFSET - 1 + Constants.MAX_MESSAGE_SIZE &&
+                    u8(b, pos + 1) == AD_TYPE_SERVICE_DATA_16_BIT_UUID &&
+                    u16(b, pos + 2) == ASTM_REMOTE_ID_UUID &&
+                    u8(b, pos + 4) == OPEN_DRONE_ID_APP_CODE)
+                return pos + AD_SERVICE_DATA_MESSAGE_OFFSET;
+            pos = adEnd;
+        }
+        return -1;
+    }
 
-    private static MessagePack parseMessagePack(byte[] payload, int offset) {
-        ByteBuffer byteBuffer = ByteBuffer.wrap(payload, offset + 1, 2);
-        byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
-
-        MessagePack messagePack = new MessagePack();
-        messagePack.messageSize = byteBuffer.get() & 0xFF;
-        messagePack.messagesInPack = byteBuffer.get() & 0xFF;
-
-        if (messagePack.messageSize != Constants.MAX_MESSAGE_SIZE ||
-            messagePack.messagesInPack <= 0 ||
-            messagePack.messagesInPack > Constants.MAX_MESSAGES_IN_PACK ||
-            payload.length < offset + 1 + 2 + messagePack.messageSize*messagePack.messagesInPack)
-            return null;
+    /* End of the AD structure holding the message found by findServiceDataMessage(). */
+    static int serviceDataEnd(byte[] b, int messageOffset) {
+        int pos = messageOffset - AD_SERVICE_DATA_MESSAGE_OFFSET;
+        return pos + 1 + u8(b, pos);
+    }
 
-        // Now that we know how much data is in the message, re-wrap and extract the data
-        byteBuffer = ByteBuffer.wrap(payload, offset + 1 + 2, messagePack.messageSize*messagePack.messagesInPack);
-        byteBuffer.get(messagePack.messages, 0, messagePack.messageSize * messagePack.messagesInPack);
-        return messagePack;
+    /* Message pack: header byte, message size, count, then count messages of message size. */
+    static final int PACK_MESSAGES_OFFSET = 3;
+    static int packMessageSize(byte[] b, int off) { return u8(b, off + 1); }
+    static int packMessageCount(byte[] b, int off) { return u8(b, off + 2); }
+
+    /* Validate the pack header against the received length once, so the sub-messages can then be
+     * decoded in place at off + PACK_MESSAGES_OFFSET + i * MAX_MESSAGE_SIZE.
+     * Returns the number of messages in the pack or 0 if the pack is malformed, which includes
+     * a pack nested in a pack.
+     */
+    static int validatePack(byte[] b, int off, int len) {
+        int messageSize = packMessageSize(b, off);
+        int messagesInPack = packMessageCount(b, off);
+
+        if (messageSize != Constants.MAX_MESSAGE_SIZE ||
+            messagesInPack <= 0 ||
+            messagesInPack > Constants.MAX_MESSAGES_IN_PACK ||
+            len < off + PACK_MESSAGES_OFFSET + messageSize*messagesInPack)
+            return 0;
+        int subOffset = off + PACK_MESSAGES_OFFSET;
+        for (int i = 0; i < messagesInPack; i++, subOffset += messageSize) {
+            if (typeId(b, subOffset) == Type.MESSAGE_PACK.id)
+                return 0;
+        }
+        return messagesInPack;
     }
 }
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2025 Ken Taylor
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+package org.opendroneid.android.bluetooth;
+
+/** TimingWheel
+ * Hashed timing wheel that expires nodes which haven't been touched for ttlTicks.  Touching a
+ * node only records the current tick, so it costs the same however often a node is heard from;
+ * the node is moved to the slot for its new deadline when the wheel reaches its old one.  Each
+ * tick visits a single slot and expires everything in it that is really due.  Not thread safe,
+ * the data manager only uses it from the ingest thread.
+ */
+class TimingWheel<T extends TimingWheel.Node> {
+    static class Node {
+        long touchedTick;
+        Node prev;
+        Node next;
+        int slot = -1;
+    }
+
+    interface ExpiryHandler<T> {
+        void onExpired(T node);
+    }
+
+    private final Node[] slots;
+    private final int mask;
+    private final int ttlTicks;
+    private long currentTick;
+
+    TimingWheel(int slotCount, int ttlTicks, long startTick) {
+        if (Integer.bitCount(slotCount) != 1)
+            throw new IllegalArgumentException("slotCount must be a power of 2");
+        if (ttlTicks <= 0 || ttlTicks >= slotCount)
+            throw new IllegalArgumentException("ttlTicks must be between 1 and slotCount - 1");
+        slots = new Node[slotCount];
+        mask = slotCount - 1;
+        this.ttlTicks = ttlTicks;
+        currentTick = startTick;
+    }
+
+    long getCurrentTick() { return currentTick; }
+
+    void add(T node) {
+        node.touchedTick = currentTick;
+        link(node, currentTick + ttlTicks);
+    }
+
+    void touch(T node) {
+        node.touchedTick = currentTick;
+    }
+
+    void remove(T node) {
+        if (node.slot < 0) return;
+        if (null != node.prev) node.prev.next = node.next;
+        else slots[node.slot] = node.next;
+        if (null != node.next) node.next.prev = node.prev;
+        node.prev = node.next = null;
+        node.slot = -1;
+    }
+
+    private void link(Node node, long deadlineTick) {
+        int s = (int) (deadlineTick & mask);
+        node.slot = s;
+        node.prev = null;
+        node.next = slots[s];
+        if (null != node.next) node.next.prev = node;
+        slots[s] = node;
+    }
+
+    /* Advances the wheel to tick, passing every node that expires on the way to handler.
+     * Returns the number of nodes expired.  After a long gap only one lap of the wheel is
+     * walked: every node is visited in that lap and anything idle that long is due anyway.
+     */
+    @SuppressWarnings("unchecked")
+    int advanceTo(long tick, ExpiryHandler<? super T> handler) {
+        int expired = 0;
+        if (tick - currentTick > slots.length)
+            currentTick = tick - slots.length;
+        while (currentTick < tick) {
+            currentTick++;
+            int s = (int) (currentTick & mask);
+            Node node = slots[s];
+            slots[s] = null;
+            while (null != node) {
+                Node next = node.next;
+                long deadlineTick = node.touchedTick + ttlTicks;
+                if (deadlineTick > currentTick) {
+                    link(node, deadlineTick);
+                } else {
+                    node.prev = node.next = null;
+                    node.slot = -1;
+                    expired++;
+                    handler.onExpired((T) node);
+                }
+                node = next;
+            }
+        }
+        return expired;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2025 Ken Taylor
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+package org.opendroneid.android.bluetooth;
+
+import org.ncssar.rid2caltopo.data.CaltopoClient;
+import org.ncssar.rid2caltopo.data.CaltopoWorkers;
+import org.ncssar.rid2caltopo.data.CtDroneSpec;
+import org.opendroneid.android.data.LinkStats;
+
+/** WaypointMailbox
+ * One drone's positions waiting to be handed to its CaltopoClient.  The mailbox holds the latest
+ * position from each transport: the ingest thread overwrites a transport's slot with each newer
+ * Location message heard on it, and at most one drain is posted to the drone's CaltopoWorkers
+ * thread at a time.  If the worker falls behind (Caltopo, file I/O or the main thread stalling)
+ * the positions it didn't get to are coalesced into the newest one per transport, so the work
+ * queued per drone, and the lag behind the radios, stays bounded however fast frames arrive.
+ * Keeping a slot per transport lets the client's source selection see every transport the
+ * drone is being heard on, rather than just whichever delivered last.
+ */
+final class WaypointMailbox {
+    private static final CtDroneSpec.TransportTypeEnum[] Transports = CtDroneSpec.TransportTypeEnum.values();
+
+    private static final class Slot {
+        boolean pending;
+        boolean offered; // a position has been offered on this transport
+        double lat;
+        double lng;
+        long altitudeInMeters;
+        long droneTimestampInMsec;
+        long frameKey;
+        CtDroneSpec.TransportTypeEnum transportType;
+
+        void copyFrom(Slot other) {
+            lat = other.lat;
+            lng = other.lng;
+            altitudeInMeters = other.altitudeInMeters;
+            droneTimestampInMsec = other.droneTimestampInMsec;
+            transportType = other.transportType;
+        }
+    }
+
+    interface Poster {
+        void post(String remoteId, Runnable work);
+    }
+
+    private final String remoteId;
+    private final LinkStats[] linkStats;
+    private final Poster poster;
+    private final Runnable drainer = this::drain;
+
+    // Guarded by this, by transport ordinal.
+    private final Slot[] slots = new Slot[Transports.length];
+    private boolean scheduled;
+
+    // The drone's CaltopoWorkers thread only.
+    private final Slot[] taken = new Slot[Transports.length];
+    private boolean linkStatsAttached;
+
+    // Written only by the ingest thread.
+    private volatile long coalesced;
+
+    WaypointMailbox(String remoteId, LinkStats[] linkStats) {
+        this(remoteId, linkStats, CaltopoWorkers::Post);
+    }
+
+    // Lets tests see the drains that would be posted to the worker.
+    WaypointMailbox(String remoteId, LinkStats[] linkStats, Poster poster) {
+        this.remoteId = remoteId;
+        this.linkStats = linkStats;
+        this.poster = poster;
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Slot();
+            taken[i] = new Slot();
+        }
+    }
+
+    long getCoalesced() { return coalesced; }
+
+    /* Ingest thread.  Returns true if an undelivered position from the same transport was
+     * replaced by this one.
+     */
+    boolean offer(double lat, double lng, long altitudeInMeters, long droneTimestampInMsec,
+                  long frameKey, CtDroneSpec.TransportTypeEnum transportType) {
+        boolean replaced;
+        boolean post;
+        synchronized (this) {
+            Slot slot = slots[transportType.ordinal()];
+            // Frames without a Location message repeat the last one heard on the transport.
+            if (slot.offered && frameKey == slot.frameKey) return false;
+            replaced = slot.pending;
+            slot.lat = lat;
+            slot.lng = lng;
+            slot.altitudeInMeters = altitudeInMeters;
+            slot.droneTimestampInMsec = droneTimestampInMsec;
+            slot.frameKey = frameKey;
+            slot.transportType = transportType;
+            slot.pending = true;
+            slot.offered = true;
+            post = !scheduled;
+            scheduled = true;
+        }
+        if (replaced) coalesced++;
+        if (post) poster.post(remoteId, drainer);
+        return replaced;
+    }
+
+    /* The drone's CaltopoWorkers thread.  Hands the client every transport's pending position,
+     * oldest first.
+     */
+    private void drain() {
+        int count = 0;
+        synchronized (this) {
+            scheduled = false;
+            for (Slot slot : slots) {
+                if (!slot.pending) continue;
+                slot.pending = false;
+                int i = count++;
+                for (; i > 0 && taken[i - 1].droneTimestampInMsec > slot.droneTimestampInMsec; i--)
+                    taken[i].copyFrom(taken[i - 1]);
+                taken[i].copyFrom(slot);
+            }
+        }
+        if (0 == count) return;
+        CaltopoClient client = CaltopoClient.ClientForRemoteId(remoteId);
+        if (!linkStatsAttached) {
+            // Lets the drone list show this aircraft's reception alongside its waypoint counts.
+            client.setLinkStats(linkStats);
+            linkStatsAttached = true;
+        }
+        for (int i = 0; i < count; i++) {
+            Slot p = taken[i];
+            client.newWaypoint(p.lat, p.lng, p.altitudeInMeters, p.droneTimestampInMsec, p.transportType);
+        }
+    }
+}
@@ -38,6 +38,7 @@ import android.os.SystemClock;
 import androidx.annotation.NonNull;
 import androidx.core.app.ActivityCompat;
 
+import java.lang.reflect.Field;
 import java.nio.ByteBuffer;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
@@ -47,13 +48,16 @@ import java.util.Locale;
 
 import org.ncssar.rid2caltopo.data.CaltopoClient;
 import org.ncssar.rid2caltopo.data.CtDroneSpec;
+import org.ncssar.rid2caltopo.data.DelayedExec;
 
 public class WiFiScanner {
     private static final int CIDLen = 3;
     private static final int DriStartByteOffset = 4;
     private static final int[] DRI_CID = {0xFA, 0x0B, 0xBC};
-    private static final int VendorTypeLen = 1;
     private static final int VendorTypeValue = 0x0D;
+    private static Field InformationElementsField;
+    private static Field ElementIdField;
+    private static Field ElementBytesField;
     private WifiAwareManager wifiAwareManager;
     private WifiAwareSession wifiAwareSession;
     private final OpenDroneIdDataManager dataManager;
@@ -67,6 +71,32 @@ public class WiFiScanner {
     private WifiManager.ScanResultsCallback scanResultsCallback;
     private static final String TAG = WiFiScanner.class.getSimpleName();
 
+    /* Active scan scheduling.  Android fails any scan an app requests beyond THROTTLE_SCANS in
+     * THROTTLE_WINDOW_MSEC, so the requests are budgeted here.  While a drone is likely nearby -
+     * one was heard over Bluetooth or a Remote ID beacon was seen in a WiFi scan within
+     * NEARBY_PERIOD_MSEC - a scan is requested every NEARBY_SCAN_SPACING_MSEC, which spends the
+     * whole budget evenly.  Otherwise only one scan per window is requested and the rest of the
+     * budget is kept for when a drone turns up.  Results from other apps' scans are still used.
+     * Everything here runs on the main thread.
+     */
+    private static final int THROTTLE_SCANS = 4;
+    private static final long THROTTLE_WINDOW_MSEC = 120000;
+    private static final long NEARBY_SCAN_SPACING_MSEC = THROTTLE_WINDOW_MSEC / THROTTLE_SCANS;
+    private static final long NEARBY_PERIOD_MSEC = 60000;
+    private static final long SCAN_CHECK_INTERVAL_MSEC = 5000;
+    private static volatile WiFiScanner ActiveScanner;
+    private final ScanBudget scanBudget = new ScanBudget();
+    private long lastBluetoothActivityMsec;
+    private long lastWiFiRidMsec;
+    private long lastResultsMsec;
+    private boolean scanOutstanding;
+    private int scansRequested;
+    private int scansRefused;
+    private int scansCompleted;
+    private int scansWithHits;
+    private boolean scanning;
+    private final DelayedExec scanCheck = new DelayedExec();
+
     public WiFiScanner(Context context, OpenDroneIdDataManager dataManager) {
         this.dataManager = dataManager;
         this.startTime = getCurrTimeStr();
@@ -77,11 +107,13 @@ public class WiFiScanner {
             scanResultsCallback = new WifiManager.ScanResultsCallback() {
                 @Override
                 public void onScanResultsAvailable() {
+                    int ridBeacons = 0;
                     try {
                         List<ScanResult> wifiList = wifiManager.getScanResults();
                         for (ScanResult scanResult : wifiList) {
                             try {
-                                handleResult(scanResult);
+                                if (handleResult(scanResult) > 0 && isNewResult(scanResult))
+                                    ridBeacons++;
                             } catch (Exception e) {
                                 CTError(TAG, "oSRA():handleResult() raised:\n", e);
                             }
@@ -89,6 +121,7 @@ public class WiFiScanner {
                     } catch (SecurityException se) {
                         CTError(TAG, "oSRA(): getScanResults() raised:\n", se);
                     }
+                    onScanResultsDelivered(ridBeacons);
                 }
             };
         } else {
@@ -97,13 +130,15 @@ public class WiFiScanner {
                 public void onReceive(Context c, Intent intent) {
                     boolean success = intent.getBooleanExtra(
                             WifiManager.EXTRA_RESULTS_UPDATED, false);
+                    int ridBeacons = 0;
                     if (success) {
                         scanSuccess++;
                         try {
                             List<ScanResult> wifiList = wifiManager.getScanResults();
                             for (ScanResult scanResult : wifiList) {
                                 try {
-                                    handleResult(scanResult);
+                                    if (handleResult(scanResult) > 0 && isNewResult(scanResult))
+                                        ridBeacons++;
                                 } catch (NoSuchFieldException | IllegalAccessException e) {
                                     CTError(TAG, "oR(): handleResult() raised:\n", e);
                                 }
@@ -111,63 +146,168 @@ public class WiFiScanner {
                         } catch (SecurityException se) {
                             CTError(TAG, "oR(): getScanResults() raised:\n", se);
                         }
-                        // scan failure handling
+                    } else {
+                        // The scan was throttled or failed, getScanResults() would only be stale.
                         scanFails++;
                     }
+                    onScanResultsDelivered(ridBeacons);
                 }
             };
         }
     }
-    void processRemoteIdVendorIE(ScanResult scanResult, ByteBuffer buf) {
+    /* Most vendor specific elements in a scan aren't Remote ID, so check the CID and vendor
+     * type in place and only hand a matching element to the data manager to be copied.
+     */
+    boolean processRemoteIdVendorIE(ScanResult scanResult, ByteBuffer buf) {
         if (buf.remaining() < 30)
-            return;
-        byte[] dri_CID = new byte[CIDLen];
-        byte[] arr = new byte[buf.remaining()];
-        buf.get(dri_CID, 0, CIDLen);
-        byte[] vendorType = new byte[VendorTypeLen];
-        buf.get(vendorType);
-        if ((dri_CID[0] & 0xFF) == DRI_CID[0] && (dri_CID[1] & 0xFF) == DRI_CID[1] &&
-                (dri_CID[2] & 0xFF) == DRI_CID[2] && vendorType[0] == VendorTypeValue) {
-            buf.position(DriStartByteOffset);
-            buf.get(arr, 0, buf.remaining());
+            return false;
+        int start = buf.position();
+        if ((buf.get(start) & 0xFF) == DRI_CID[0] && (buf.get(start + 1) & 0xFF) == DRI_CID[1] &&
+                (buf.get(start + 2) & 0xFF) == DRI_CID[2] && buf.get(start + CIDLen) == VendorTypeValue) {
             long timeNano = SystemClock.elapsedRealtimeNanos();
             CtDroneSpec.TransportTypeEnum transportType = CtDroneSpec.TransportTypeEnum.WIFI;
-            dataManager.receiveDataWiFiBeacon(arr, scanResult.BSSID, scanResult.BSSID.hashCode(),
-                    scanResult.level, timeNano, transportType);
+            long bssidLong = OpenDroneIdParser.parseMacAddress(scanResult.BSSID);
+            if (bssidLong < 0)
+                return false;
+            dataManager.receiveDataWiFiBeacon(buf, start + DriStartByteOffset, scanResult.BSSID,
+                    bssidLong, scanResult.level, timeNano, transportType);
+            return true;
         }
+        return false;
     }
 
-    void handleResult(ScanResult scanResult) throws NoSuchFieldException, IllegalAccessException {
+    /* Returns the number of Remote ID elements in scanResult handed to the data manager. */
+    int handleResult(ScanResult scanResult) throws NoSuchFieldException, IllegalAccessException {
+        int ridElements = 0;
         if (Build.VERSION.SDK_INT < Build.VERSION_CODES.R) {
             // On earlier Android APIs, the information element field is hidden.
-            // Use reflection to access it.
-            Object value = ScanResult.class.getField("informationElements").get(scanResult);
+            // Use reflection to access it.  The Field lookups are done once and cached.
+            if (null == InformationElementsField)
+                InformationElementsField = ScanResult.class.getField("informationElements");
+            Object value = InformationElementsField.get(scanResult);
             ScanResult.InformationElement[] elements = (ScanResult.InformationElement[]) value;
             if (elements == null)
-                return;
+                return 0;
             for (ScanResult.InformationElement element : elements) {
                 if (element == null)
                     continue;
-                Object valueId = element.getClass().getField("id").get(element);
-                if (valueId == null)
-                    continue;
-                int id = (int) valueId;
+                if (null == ElementIdField) {
+                    ElementIdField = element.getClass().getField("id");
+                    ElementBytesField = element.getClass().getField("bytes");
+                }
+                int id = ElementIdField.getInt(element);
                 if (id == 221) {
-                    Object valueBytes = element.getClass().getField("bytes").get(element);
+                    Object valueBytes = ElementBytesField.get(element);
                     if (valueBytes == null)
                         continue;
-                    ByteBuffer buf = ByteBuffer.wrap(((byte[]) valueBytes)).asReadOnlyBuffer();
-                    processRemoteIdVendorIE(scanResult, buf);
+                    ByteBuffer buf = ByteBuffer.wrap(((byte[]) valueBytes));
+                    if (processRemoteIdVendorIE(scanResult, buf)) ridElements++;
                 }
             }
         } else {
             for (ScanResult.InformationElement element : scanResult.getInformationElements()) {
                 if (element != null && element.getId() == 221) {
                     ByteBuffer buf = element.getBytes();
-                    processRemoteIdVendorIE(scanResult, buf);
+                    if (processRemoteIdVendorIE(scanResult, buf)) ridElements++;
                 }
             }
         }
+        return ridElements;
+    }
+
+    /* getScanResults() returns everything cached, so only a result seen since the previous
+     * delivery counts towards a scan's hits.  ScanResult.timestamp is in microseconds since boot.
+     */
+    private boolean isNewResult(ScanResult scanResult) {
+        return scanResult.timestamp / 1000 > lastResultsMsec;
+    }
+
+    /* Main thread.  Bluetooth has just heard a drone (or a peer reported one), so it may well
+     * be sending WiFi beacons too.
+     */
+    static void BluetoothActivity() {
+        WiFiScanner scanner = ActiveScanner;
+        if (null == scanner) return;
+        long now = SystemClock.elapsedRealtime();
+        boolean wasNearby = scanner.droneNearby(now);
+        scanner.lastBluetoothActivityMsec = now;
+        if (!wasNearby) scanner.checkScanBudget();
+    }
+
+    /* Times of the last THROTTLE_SCANS scan requests, which decide whether another one fits. */
+    static final class ScanBudget {
+        // Oldest at next, 0 for a slot not used yet.
+        private final long[] requestMsec = new long[THROTTLE_SCANS];
+        private int next;
+
+        /* True if a scan requested at now would be inside the throttle and at least spacingMsec
+         * after the previous request.
+         */
+        boolean allows(long now, long spacingMsec) {
+            long oldestMsec = requestMsec[next];
+            long newestMsec = requestMsec[(next + THROTTLE_SCANS - 1) % THROTTLE_SCANS];
+            if (0 != oldestMsec && now - oldestMsec < THROTTLE_WINDOW_MSEC)
+                return false; // Budget spent, Android would refuse the scan.
+            return 0 == newestMsec || now - newestMsec >= spacingMsec;
+        }
+
+        void record(long now) {
+            requestMsec[next] = now;
+            next = (next + 1) % THROTTLE_SCANS;
+        }
+    }
+
+    private boolean droneNearby(long now) {
+        return (0 != lastBluetoothActivityMsec && now - lastBluetoothActivityMsec < NEARBY_PERIOD_MSEC) ||
+                (0 != lastWiFiRidMsec && now - lastWiFiRidMsec < NEARBY_PERIOD_MSEC);
+    }
+
+    private void checkScanBudget() {
+        if (!scanning) return;
+        long now = SystemClock.elapsedRealtime();
+        long spacingMsec = droneNearby(now) ? NEARBY_SCAN_SPACING_MSEC : THROTTLE_WINDOW_MSEC;
+        if (!scanBudget.allows(now, spacingMsec))
+            return;
+
+        scanBudget.record(now);
+        scansRequested++;
+        if (requestScan()) {
+            scanOutstanding = true;
+        } else {
+            scansRefused++;
+            if (CaltopoClient.DebugLevel >= CaltopoClient.DebugLevelDebug)
+                CaltopoClient.CTDebug(TAG, "checkScanBudget(): scan request refused.");
+        }
+    }
+
+    // Deprecated since API 28, but still the only way to ask for a scan.
+    @SuppressWarnings("deprecation")
+    private boolean requestScan() {
+        try {
+            return wifiManager.startScan();
+        } catch (SecurityException se) {
+            CTError(TAG, "requestScan(): startScan() raised:\n", se);
+            return false;
+        }
+    }
+
+    private void onScanResultsDelivered(int ridBeacons) {
+        long now = SystemClock.elapsedRealtime();
+        lastResultsMsec = now;
+        if (ridBeacons > 0) lastWiFiRidMsec = now;
+        if (!scanOutstanding) return;
+        scanOutstanding = false;
+        scansCompleted++;
+        if (ridBeacons > 0) scansWithHits++;
+        if (CaltopoClient.DebugLevel >= CaltopoClient.DebugLevelDebug)
+            CaltopoClient.CTDebug(TAG, String.format(Locale.US,
+                    "Scan %d found %d Remote ID beacon(s), %s.", scansCompleted, ridBeacons, scanStatsAsString()));
+    }
+
+    private String scanStatsAsString() {
+        return String.format(Locale.US, "%d scans requested, %d refused, %d of %d with hits (%.0f%%)",
+                scansRequested, scansRefused, scansWithHits, scansCompleted,
+                0 == scansCompleted ? 0.0 : 100.0 * scansWithHits / scansCompleted);
     }
 
     public void startScan() {
@@ -179,6 +319,10 @@ public class WiFiScanner {
             intentFilter.addAction(WifiManager.SCAN_RESULTS_AVAILABLE_ACTION);
             context.registerReceiver(wifiScanReceiver, intentFilter);
         }
+        scanning = true;
+        lastResultsMsec = SystemClock.elapsedRealtime();
+        ActiveScanner = this;
+        scanCheck.start(this::checkScanBudget, SCAN_CHECK_INTERVAL_MSEC, SCAN_CHECK_INTERVAL_MSEC);
 
         wifiAwareManager = (WifiAwareManager) context.getSystemService(Context.WIFI_AWARE_SERVICE);
         if (wifiAwareManager != null && wifiAwareManager.isAvailable()) {
@@ -192,7 +336,10 @@ public class WiFiScanner {
     }
 
     public void stopScan() {
-        CaltopoClient.CTInfo(TAG, "Stopping WiFi beacon scanning");
+        CaltopoClient.CTInfo(TAG, "Stopping WiFi beacon scanning: " + scanStatsAsString());
+        scanning = false;
+        if (ActiveScanner == this) ActiveScanner = null;
+        scanCheck.stop();
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
             wifiManager.unregisterScanResultsCallback(scanResultsCallback);
         } else {
@@ -9,90 +9,212 @@ package org.opendroneid.android.data;
 import androidx.lifecycle.MutableLiveData;
 import androidx.annotation.NonNull;
 
+import org.ncssar.rid2caltopo.data.CtDroneSpec;
 import org.opendroneid.android.Constants;
 
 public class AircraftObject {
-    final public MutableLiveData<Connection> connection = new MutableLiveData<>();
-    final public MutableLiveData<Identification> identification1 = new MutableLiveData<>();
-    final public MutableLiveData<Identification> identification2 = new MutableLiveData<>();
+    // Latest published state, posted at most once per publish interval by the data manager.
+    final public MutableLiveData<AircraftSnapshot> snapshot = new MutableLiveData<>();
     final public MutableLiveData<Identification> id1Shadow = new MutableLiveData<>();
     final public MutableLiveData<Identification> id2Shadow = new MutableLiveData<>();
-    final public MutableLiveData<LocationData> location = new MutableLiveData<>();
-    final public MutableLiveData<AuthenticationData> authentication = new MutableLiveData<>();
-    final public MutableLiveData<SelfIdData> selfid = new MutableLiveData<>();
-    final public MutableLiveData<SystemData> system = new MutableLiveData<>();
-    final public MutableLiveData<OperatorIdData> operatorid = new MutableLiveData<>();
 
     private final long macAddress;
 
+    // Fingerprint of the raw message last decoded into each static record.  The data manager
+    // compares against these to skip decoding and notifying when a message just repeats.
+    private long id1Fingerprint;
+    private long id2Fingerprint;
+    private long selfIdFingerprint;
+    private long systemFingerprint;
+    private long operatorIdFingerprint;
+    // Fingerprint of the most recent Location message, identifies the frame across transports.
+    private long locationFingerprint;
+    // Latest Location timestamp handed on, in milliseconds since the epoch, so they never go back.
+    private long lastDroneTimestampMsec;
+    // UAS ID key this aircraft was first registered under by the data manager, 0 until a
+    // Basic ID message has been received for it.
+    private long uasIdKey;
+    // Number of MACs the data manager currently resolves to this aircraft, it is evicted at 0.
+    private int aliasCount;
+    // Ring of the keys of the most recent frames, see checkRecentFrame().
+    private static final int RECENT_FRAMES = 8;
+    private final long[] recentFrameKeys = new long[RECENT_FRAMES];
+    private int recentFrameCount;
+    private int nextRecentFrame;
+
+    // The records are created once and decoded into in place by the data manager's ingest
+    // thread, which marks each one dirty as it changes.  Observers only ever see the copies
+    // in a published snapshot.
+    private final Connection connectionData = new Connection();
+    private final Identification identification1Data = new Identification();
+    private final Identification identification2Data = new Identification();
+    private final LocationData locationData = new LocationData();
+    private final AuthenticationData authenticationData = new AuthenticationData();
+    private final SelfIdData selfIdData = new SelfIdData();
+    private final SystemData systemData = new SystemData();
+    private final OperatorIdData operatorIdData = new OperatorIdData();
+    // Reception stats by CtDroneSpec.TransportTypeEnum ordinal, updated for every frame.
+    private final LinkStats[] linkStats = new LinkStats[CtDroneSpec.TransportTypeEnum.values().length];
+
+    // AircraftSnapshot bits for the records changed since the last snapshot.  Ingest thread only.
+    private int dirty = AircraftSnapshot.ALL;
+    private AircraftSnapshot lastSnapshot;
+
     public AircraftObject(long macAddress) {
         this.macAddress = macAddress;
+        for (int i = 0; i < linkStats.length; i++)
+            linkStats[i] = new LinkStats();
+    }
+
+    public void markDirty(int which) { dirty |= which; }
+
+    /* Posts a snapshot of whatever changed since the previous one.  Returns false if nothing did. */
+    public boolean publishSnapshot() {
+        if (0 == dirty)
+            return false;
+        lastSnapshot = new AircraftSnapshot(this, lastSnapshot, dirty);
+        dirty = 0;
+        snapshot.postValue(lastSnapshot);
+        return true;
     }
     public long getMacAddress() { return macAddress; }
 
-    public Connection getConnection() { return connection.getValue(); }
-    public Identification getIdentification1() { return identification1.getValue(); }
-    public Identification getIdentification2() { return identification2.getValue(); }
-    public LocationData getLocation() { return location.getValue(); }
-    public AuthenticationData getAuthentication() { return authentication.getValue(); }
-    public SelfIdData getSelfID() { return selfid.getValue(); }
-    public SystemData getSystem() { return system.getValue(); }
-    public OperatorIdData getOperatorID() { return operatorid.getValue(); }
+    // The data manager's ingest state, see the fields above.  Ingest thread only.
+    public long getId1Fingerprint() { return id1Fingerprint; }
+    public void setId1Fingerprint(long fingerprint) { id1Fingerprint = fingerprint; }
+    public long getId2Fingerprint() { return id2Fingerprint; }
+    public void setId2Fingerprint(long fingerprint) { id2Fingerprint = fingerprint; }
+    public long getSelfIdFingerprint() { return selfIdFingerprint; }
+    public void setSelfIdFingerprint(long fingerprint) { selfIdFingerprint = fingerprint; }
+    public long getSystemFingerprint() { return systemFingerprint; }
+    public void setSystemFingerprint(long fingerprint) { systemFingerprint = fingerprint; }
+    public long getOperatorIdFingerprint() { return operatorIdFingerprint; }
+    public void setOperatorIdFingerprint(long fingerprint) { operatorIdFingerprint = fingerprint; }
+    public long getLocationFingerprint() { return locationFingerprint; }
+    public void setLocationFingerprint(long fingerprint) { locationFingerprint = fingerprint; }
+    public long getLastDroneTimestampMsec() { return lastDroneTimestampMsec; }
+    public void setLastDroneTimestampMsec(long msec) { lastDroneTimestampMsec = msec; }
+    public long getUasIdKey() { return uasIdKey; }
+    public void setUasIdKey(long key) { uasIdKey = key; }
+    public int getAliasCount() { return aliasCount; }
+    public void addAlias() { aliasCount++; }
+    /* Returns the number of aliases left. */
+    public int removeAlias() { return --aliasCount; }
+
+    public Connection getConnection() { return connectionData; }
+    public Identification getIdentification1() { return identification1Data; }
+    public Identification getIdentification2() { return identification2Data; }
+    public LocationData getLocation() { return locationData; }
+    public AuthenticationData getAuthentication() { return authenticationData; }
+    public SelfIdData getSelfID() { return selfIdData; }
+    public SystemData getSystem() { return systemData; }
+    public OperatorIdData getOperatorID() { return operatorIdData; }
+    public LinkStats getLinkStats(CtDroneSpec.TransportTypeEnum tt) { return linkStats[tt.ordinal()]; }
+    public LinkStats[] getLinkStats() { return linkStats; }
 
     // Non-zero authentication data pages do not contain the following fields. Save them for displaying
     private int authLastPageIndexSave;
     private int authLengthSave;
     private long authTimestampSave;
+    // Pages of the current authentication set received so far, bit n for page n.
+    private int authPagesReceived;
+    // Result for the last complete set, kept across the pages of the next one.
+    private AuthenticationData.VerificationEnum authVerification =
+            AuthenticationData.VerificationEnum.Incomplete;
+    // Fingerprint of the last complete set checked, so each is only checked once.
+    private long authVerifiedFingerprint;
 
     // Multiple authentication messages are possible, each transmitting a part of the
     // authentication signature. Collect the data into authDataCombined.
     private final byte[] authDataCombined = new byte[Constants.MAX_AUTH_DATA];
 
+    // Each received authentication page is decoded into this scratch record before being
+    // merged by combineAuthentication(), so receiving a page doesn't allocate.
+    private final AuthenticationData authPage = new AuthenticationData();
+    private final byte[] authPageData = new byte[Constants.MAX_AUTH_DATA];
+    public AuthenticationData getAuthPage() { return authPage; }
+    public byte[] getAuthPageData() { return authPageData; }
+
     public AuthenticationData combineAuthentication(AuthenticationData newData) {
-        AuthenticationData currData = authentication.getValue();
-        if (currData == null)
-            currData = new AuthenticationData();
+        AuthenticationData currData = authenticationData;
 
         currData.setMsgCounter(newData.getMsgCounter());
         currData.setTimestamp(newData.getTimestamp());
         currData.setMsgVersion(newData.getMsgVersion());
 
+        int page = newData.getAuthDataPage();
         int offset = 0;
         int amount = Constants.MAX_AUTH_PAGE_ZERO_SIZE;
-        if (newData.getAuthDataPage() == 0)  {
+        if (page == 0)  {
+            // Page 0 of a different set: forget the pages collected for the previous one.
+            if (newData.getAuthTimestamp() != authTimestampSave ||
+                    newData.getAuthLastPageIndex() != authLastPageIndexSave ||
+                    newData.getAuthType() != currData.getAuthType())
+                authPagesReceived = 0;
             authLastPageIndexSave = newData.getAuthLastPageIndex();
             authLengthSave = newData.getAuthLength();
             authTimestampSave = newData.getAuthTimestamp();
         } else {
-            offset = Constants.MAX_AUTH_PAGE_ZERO_SIZE + (newData.getAuthDataPage() - 1) * Constants.MAX_AUTH_PAGE_NON_ZERO_SIZE;
+            offset = Constants.MAX_AUTH_PAGE_ZERO_SIZE + (page - 1) * Constants.MAX_AUTH_PAGE_NON_ZERO_SIZE;
             amount = Constants.MAX_AUTH_PAGE_NON_ZERO_SIZE;
         }
-        for (int i = offset; i < offset + amount; i++)
-            authDataCombined[i] = newData.getAuthData()[i];
+        // The page was decoded into newData's authData at its final position.
+        System.arraycopy(newData.getAuthData(), offset, authDataCombined, offset, amount);
+        authPagesReceived |= 1 << page;
 
         currData.setAuthType(newData.getAuthType());
         currData.setAuthLastPageIndex(authLastPageIndexSave);
         currData.setAuthLength(authLengthSave);
         currData.setAuthTimestamp(authTimestampSave);
         currData.setAuthData(authDataCombined);
+        currData.setVerification(authVerification);
         return currData;
     }
 
+    /* True once page 0 and every page up to the last page index it gave have been received. */
+    public boolean isAuthSetComplete() {
+        return 0 != (authPagesReceived & 1) && authPagesReceived == (2 << authLastPageIndexSave) - 1;
+    }
+
+    /* Ingest thread.  Returns true if frameKey is one of the last few frames heard from this
+     * aircraft, on any transport, otherwise records it and returns false.
+     */
+    public boolean checkRecentFrame(long frameKey) {
+        for (int i = 0; i < recentFrameCount; i++) {
+            if (recentFrameKeys[i] == frameKey)
+                return true;
+        }
+        recentFrameKeys[nextRecentFrame] = frameKey;
+        nextRecentFrame = (nextRecentFrame + 1) % RECENT_FRAMES;
+        if (recentFrameCount < RECENT_FRAMES) recentFrameCount++;
+        return false;
+    }
+
+    public AuthenticationData.VerificationEnum getAuthVerification() { return authVerification; }
+    public void setAuthVerification(AuthenticationData.VerificationEnum verification) {
+        authVerification = verification;
+        authenticationData.setVerification(verification);
+    }
+    public long getAuthVerifiedFingerprint() { return authVerifiedFingerprint; }
+    public void setAuthVerifiedFingerprint(long fingerprint) { authVerifiedFingerprint = fingerprint; }
+
     private int idToShow = 0;
 
     // When two different BasicId messages have been received, use this function to force a periodic
     // swap between their uasId in the list view. It is assumed this is called once per second.
     // The change logic is slowed down to once per three seconds.
     public void updateShadowBasicId() {
+        AircraftSnapshot s = snapshot.getValue();
+        if (null == s)
+            return;
         switch (idToShow) {
             case 0:
-                id1Shadow.setValue(identification1.getValue());
+                id1Shadow.setValue(s.identification1);
                 idToShow++;
                 break;
             case 3:
-                Identification id2 = identification2.getValue();
-                if (id2 != null && id2.getIdType() != Identification.IdTypeEnum.None)
-                    id2Shadow.setValue(identification2.getValue());
+                if (s.identification2.getIdType() != Identification.IdTypeEnum.None)
+                    id2Shadow.setValue(s.identification2);
                 idToShow++;
                 break;
             case 6:
@@ -107,8 +229,8 @@ public class AircraftObject {
     public String toString() {
         return "AircraftObject{" +
                 "macAddress=" + macAddress +
-                ", identification1=" + identification1 +
-                ", identification2=" + identification2 +
+                ", identification1=" + identification1Data +
+                ", identification2=" + identification2Data +
                 '}';
     }
 }
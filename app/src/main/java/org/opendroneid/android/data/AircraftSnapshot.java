@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2025 Ken Taylor
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+package org.opendroneid.android.data;
+
+/** AircraftSnapshot
+ * Immutable copy of an aircraft's records, published to observers at the display cadence
+ * rather than once per received frame.  Records that haven't changed since the previous
+ * snapshot are shared with it; changed says which ones are new.
+ */
+public final class AircraftSnapshot {
+    public static final int CONNECTION = 1;
+    public static final int IDENTIFICATION1 = 1 << 1;
+    public static final int IDENTIFICATION2 = 1 << 2;
+    public static final int LOCATION = 1 << 3;
+    public static final int AUTHENTICATION = 1 << 4;
+    public static final int SELF_ID = 1 << 5;
+    public static final int SYSTEM = 1 << 6;
+    public static final int OPERATOR_ID = 1 << 7;
+    public static final int ALL = (1 << 8) - 1;
+
+    public final int changed;
+    public final Connection connection;
+    public final Identification identification1;
+    public final Identification identification2;
+    public final LocationData location;
+    public final AuthenticationData authentication;
+    public final SelfIdData selfId;
+    public final SystemData system;
+    public final OperatorIdData operatorId;
+
+    AircraftSnapshot(AircraftObject ac, AircraftSnapshot previous, int changed) {
+        if (null == previous) changed = ALL;
+        this.changed = changed;
+        connection = 0 != (changed & CONNECTION) ?
+                ac.getConnection().copy() : previous.connection;
+        identification1 = 0 != (changed & IDENTIFICATION1) ?
+                ac.getIdentification1().copy() : previous.identification1;
+        identification2 = 0 != (changed & IDENTIFICATION2) ?
+                ac.getIdentification2().copy() : previous.identification2;
+        location = 0 != (changed & LOCATION) ?
+                ac.getLocation().copy() : previous.location;
+        authentication = 0 != (changed & AUTHENTICATION) ?
+                ac.getAuthentication().copy() : previous.authentication;
+        selfId = 0 != (changed & SELF_ID) ?
+                ac.getSelfID().copy() : previous.selfId;
+        system = 0 != (changed & SYSTEM) ?
+                ac.getSystem().copy() : previous.system;
+        operatorId = 0 != (changed & OPERATOR_ID) ?
+                ac.getOperatorID().copy() : previous.operatorId;
+    }
+
+    public boolean hasChanged(int which) { return 0 != (changed & which); }
+}
@@ -21,6 +21,7 @@ public class AuthenticationData extends MessageData {
     private int authLength;
     private long authTimestamp;
     private byte[] authData;
+    private VerificationEnum verification = VerificationEnum.Incomplete;
 
     public AuthenticationData() {
         super();
@@ -50,6 +51,19 @@ public class AuthenticationData extends MessageData {
         public final int id;
     }
 
+    /* How far the drone's authentication has got.  The signature itself is never checked:
+     * Unverified means a complete, well formed, recently signed set was received, Invalid that
+     * the set was malformed or its timestamp out of range.
+     */
+    public enum VerificationEnum {
+        Incomplete,
+        Unverified,
+        Invalid
+    }
+
+    public VerificationEnum getVerification() { return verification; }
+    public void setVerification(VerificationEnum verification) { this.verification = verification; }
+
     public AuthTypeEnum getAuthType() { return authType; }
     void setAuthType(AuthTypeEnum authType) { this.authType = authType; }
     public void setAuthType(int authType) {
@@ -90,7 +104,7 @@ public class AuthenticationData extends MessageData {
         this.authLastPageIndex = authLastPageIndex;
     }
 
-    int getAuthLength() { return authLength; }
+    public int getAuthLength() { return authLength; }
     public String getAuthLengthAsString() {
         return String.format(Locale.US,"%d bytes", authLength);
     }
@@ -102,7 +116,7 @@ public class AuthenticationData extends MessageData {
         this.authLength = authLength;
     }
 
-    long getAuthTimestamp() { return authTimestamp; }
+    public long getAuthTimestamp() { return authTimestamp; }
     public String getAuthTimestampAsString(Resources res) {
         if (authTimestamp == 0)
             return "-";
@@ -112,7 +126,7 @@ public class AuthenticationData extends MessageData {
     public void setAuthTimestamp(long authTimestamp) { this.authTimestamp = authTimestamp; }
 
 
-    byte[] getAuthData() { return authData; }
+    public byte[] getAuthData() { return authData; }
     public void setAuthData(byte[] authData) { this.authData = authData; }
     public String getAuthenticationDataAsString() {
         StringBuilder sb = new StringBuilder();
@@ -121,4 +135,11 @@ public class AuthenticationData extends MessageData {
         }
         return sb.toString();
     }
+
+    @Override
+    public AuthenticationData copy() {
+        AuthenticationData copy = (AuthenticationData) super.copy();
+        if (null != authData) copy.authData = authData.clone();
+        return copy;
+    }
 }
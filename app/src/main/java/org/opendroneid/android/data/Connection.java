@@ -31,4 +31,7 @@ public class Connection extends MessageData {
     public Connection() {
         super();
     }
+
+    @Override
+    public Connection copy() { return (Connection) super.copy(); }
 }
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2025 Ken Taylor
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+package org.opendroneid.android.data;
+
+import androidx.annotation.NonNull;
+
+import org.ncssar.rid2caltopo.data.CtDroneSpec;
+
+import java.util.Locale;
+
+/** EvictedAircraft
+ * The summary the data manager logs for an aircraft it evicts for having gone quiet:
+ * enough to tell who it was and where and when it was last heard, without holding on
+ * to its LiveData and authentication buffers.
+ */
+public final class EvictedAircraft {
+    public final String uasId;     // null if a Basic ID was never received
+    public final String macAddress;
+    public final long firstSeen;   // milliseconds since the epoch
+    public final long lastSeen;    // milliseconds since the epoch
+    public final double latitude;
+    public final double longitude;
+    public final CtDroneSpec.TransportTypeEnum transportType;
+
+    public EvictedAircraft(@NonNull AircraftObject ac) {
+        Connection connection = ac.getConnection();
+        LocationData location = ac.getLocation();
+        Identification id = ac.getIdentification1();
+        uasId = id.getIdType() == Identification.IdTypeEnum.None ? null : id.getUasIdAsString();
+        macAddress = connection.macAddress;
+        firstSeen = connection.firstSeen;
+        lastSeen = connection.lastSeen;
+        latitude = location.getLatitude();
+        longitude = location.getLongitude();
+        transportType = connection.transportType;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%s (%s) via %s at %.5f,%.5f, seen %d - %d",
+                uasId, macAddress, transportType, latitude, longitude, firstSeen, lastSeen);
+    }
+}
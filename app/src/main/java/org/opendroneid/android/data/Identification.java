@@ -6,6 +6,7 @@
  */
 package org.opendroneid.android.data;
 
+import org.ncssar.rid2caltopo.data.CtDroneSpec;
 import org.opendroneid.android.Constants;
 import java.util.Arrays;
 
@@ -14,6 +15,9 @@ public class Identification extends MessageData {
     private UaTypeEnum uaType;
     private IdTypeEnum idType;
     private byte[] uasId;
+    // CtDroneSpec.SanitizedRemoteId() of getUasIdAsString(), interned.  Computed on first use
+    // after the id or its type changes, so per-frame callers don't redo it.
+    private String sanitizedUasId;
 
     public Identification() {
         super();
@@ -73,12 +77,18 @@ public class Identification extends MessageData {
 
     public IdTypeEnum getIdType() { return idType; }
     public void setIdType(int idType) {
+        IdTypeEnum newIdType = toIdType(idType);
+        if (newIdType != this.idType) sanitizedUasId = null;
+        this.idType = newIdType;
+    }
+
+    public static IdTypeEnum toIdType(int idType) {
         switch(idType) {
-            case 1: this.idType = IdTypeEnum.Serial_Number; break;
-            case 2: this.idType = IdTypeEnum.CAA_Registration_ID; break;
-            case 3: this.idType = IdTypeEnum.UTM_Assigned_ID; break;
-            case 4: this.idType = IdTypeEnum.Specific_Session_ID; break;
-            default: this.idType = IdTypeEnum.None; break;
+            case 1: return IdTypeEnum.Serial_Number;
+            case 2: return IdTypeEnum.CAA_Registration_ID;
+            case 3: return IdTypeEnum.UTM_Assigned_ID;
+            case 4: return IdTypeEnum.Specific_Session_ID;
+            default: return IdTypeEnum.None;
         }
     }
 
@@ -104,8 +114,27 @@ public class Identification extends MessageData {
         return "";
     }
     public void setUasId(byte[] uasId) {
-        if (uasId.length <= Constants.MAX_ID_BYTE_SIZE)
+        if (uasId.length <= Constants.MAX_ID_BYTE_SIZE) {
             this.uasId = uasId;
+            sanitizedUasId = null;
+        }
+    }
+
+    // Copy the id straight out of a received message into a buffer owned by this record.
+    public void setUasId(byte[] src, int offset) {
+        if (uasId.length != Constants.MAX_ID_BYTE_SIZE)
+            uasId = new byte[Constants.MAX_ID_BYTE_SIZE];
+        System.arraycopy(src, offset, uasId, 0, Constants.MAX_ID_BYTE_SIZE);
+        sanitizedUasId = null;
+    }
+
+    public String getSanitizedUasId() {
+        String id = sanitizedUasId;
+        if (null == id) {
+            id = CtDroneSpec.SanitizedRemoteId(getUasIdAsString()).intern();
+            sanitizedUasId = id;
+        }
+        return id;
     }
 
     @Override
@@ -121,4 +150,11 @@ public class Identification extends MessageData {
                idType == that.idType &&
                Arrays.equals(uasId, that.uasId);
     }
+
+    @Override
+    public Identification copy() {
+        Identification copy = (Identification) super.copy();
+        if (null != uasId) copy.uasId = uasId.clone();
+        return copy;
+    }
 }
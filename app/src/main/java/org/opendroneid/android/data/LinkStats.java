@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2025 Ken Taylor
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+package org.opendroneid.android.data;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/** LinkStats
+ * Reception quality of one drone on one transport: receive rate, loss worked out from gaps in
+ * the 8 bit msgCounter, and a smoothed RSSI.  Updated by the data manager's ingest thread once
+ * per frame in constant time without allocating; the figures it publishes are volatile so the
+ * UI and logs can read them from any thread.
+ *
+ * Bluetooth legacy adverts count per message type while message packs count per pack, so the
+ * last counter is kept per message type (the pack type included).  A gap of more than
+ * MAX_COUNTER_GAP is taken as the transmitter restarting rather than as lost frames.
+ */
+public final class LinkStats {
+    private static final int MAX_COUNTER_GAP = 64;
+    // Smoothing for the EWMAs, each new sample counts for 1/8.
+    private static final double ALPHA = 0.125;
+
+    // Ingest thread only.
+    private final int[] lastCounter = new int[16];
+    private long lastTimeNano;
+    private double intervalNanosEwma;
+    private double rssiEwmaValue;
+    private boolean rssiSeen;
+
+    private volatile long received;
+    private volatile long lost;
+    private volatile float rateHz;
+    private volatile float rssiEwma;
+
+    public LinkStats() {
+        Arrays.fill(lastCounter, -1);
+    }
+
+    /* Ingest thread.  typeId is the message (or pack) type of the frame, rssi is 0 if unknown. */
+    public void onFrame(long timeNano, int typeId, int msgCounter, int rssi) {
+        int last = lastCounter[typeId];
+        lastCounter[typeId] = msgCounter;
+        if (last >= 0) {
+            int gap = (msgCounter - last) & 0xFF;
+            if (0 == gap) return; // The same frame reported again.
+            if (gap <= MAX_COUNTER_GAP) lost += gap - 1;
+        }
+        received++;
+
+        if (0 != lastTimeNano) {
+            long interval = timeNano - lastTimeNano;
+            if (interval > 0) {
+                intervalNanosEwma = 0 == intervalNanosEwma ?
+                        interval : intervalNanosEwma + ALPHA * (interval - intervalNanosEwma);
+                rateHz = (float) (1e9 / intervalNanosEwma);
+            }
+        }
+        lastTimeNano = timeNano;
+
+        if (0 != rssi) {
+            rssiEwmaValue = rssiSeen ? rssiEwmaValue + ALPHA * (rssi - rssiEwmaValue) : rssi;
+            rssiSeen = true;
+            rssiEwma = (float) rssiEwmaValue;
+        }
+    }
+
+    public long getReceived() { return received; }
+    public long getLost() { return lost; }
+    public float getRateHz() { return rateHz; }
+    public float getRssiEwma() { return rssiEwma; }
+
+    /* Percentage of the frames sent that were missed, 0 before any were received. */
+    public float getLossPercent() {
+        long r = received;
+        long l = lost;
+        return 0 == r + l ? 0 : 100f * l / (r + l);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%d rx, %.1f%% lost, %.1f Hz, %.0f dBm",
+                received, getLossPercent(), rateHz, rssiEwma);
+    }
+}
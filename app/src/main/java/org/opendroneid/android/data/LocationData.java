@@ -31,6 +31,12 @@ public class LocationData extends MessageData {
     private SpeedAccuracyEnum speedAccuracy;
     private double locationTimestamp;
     private double timeAccuracy;
+    // The receiver fix current when this message was decoded.  The distance to it is only
+    // worked out when something asks for it, and then reused until either end moves.
+    private ReceiverLocation receiver;
+    private long distanceEpoch = -1;
+    private double distanceLatitude;
+    private double distanceLongitude;
     private float distance;
 
     public LocationData() {
@@ -348,7 +354,23 @@ public class LocationData extends MessageData {
         this.timeAccuracy = timeAccuracy;
     }
 
-    public String getDistanceAsString() { return String.format(Locale.US,"~%.0f m", distance); }
-    public float getDistance() { return distance; }
-    public void setDistance(float distance) { this.distance = distance; }
+    public String getDistanceAsString() { return String.format(Locale.US,"~%.0f m", getDistance()); }
+    public float getDistance() {
+        ReceiverLocation rx = receiver;
+        double lat = latitude;
+        double lng = longitude;
+        if (null == rx || 0 == lat || 0 == lng)
+            return 0;
+        if (rx.epoch != distanceEpoch || lat != distanceLatitude || lng != distanceLongitude) {
+            distance = (float) rx.distanceInMeters(lat, lng);
+            distanceEpoch = rx.epoch;
+            distanceLatitude = lat;
+            distanceLongitude = lng;
+        }
+        return distance;
+    }
+    public void setReceiver(ReceiverLocation receiver) { this.receiver = receiver; }
+
+    @Override
+    public LocationData copy() { return (LocationData) super.copy(); }
 }
@@ -11,7 +11,7 @@ import org.opendroneid.android.Constants;
 import java.sql.Timestamp;
 import java.util.Locale;
 
-public class MessageData {
+public class MessageData implements Cloneable {
     private int msgCounter = 0;
     private long timestamp = 0;
     private int msgVersion = 0;
@@ -21,7 +21,7 @@ public class MessageData {
     public String getMsgCounterAsString() { return String.format(Locale.US ,"%3d", this.msgCounter); }
 
     public void setTimestamp(long timestamp) { this.timestamp = timestamp; }
-    long getTimestamp() { return timestamp; }
+    public long getTimestamp() { return timestamp; }
     public String getTimestampAsString() {
         long msSinceEvent = (SystemClock.elapsedRealtimeNanos() - getTimestamp()) / 1000000L;
         long actualTime = System.currentTimeMillis() - msSinceEvent;
@@ -33,4 +33,13 @@ public class MessageData {
     public void setMsgVersion(int msgVersion) { this.msgVersion = msgVersion; }
     public String getMsgVersionAsString() { return String.format(Locale.US ,"v.%d", this.msgVersion); }
     public boolean msgVersionUnsupported() { return msgVersion > Constants.MAX_MSG_VERSION; }
+
+    // Copy for a published snapshot.  Subclasses that own arrays override this to copy them too.
+    public MessageData copy() {
+        try {
+            return (MessageData) clone();
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
 }
@@ -32,6 +32,13 @@ public class OperatorIdData extends MessageData {
         if (operatorId.length <= Constants.MAX_ID_BYTE_SIZE)
             this.operatorId = operatorId;
     }
+
+    // Copy the id straight out of a received message into a buffer owned by this record.
+    public void setOperatorId(byte[] src, int offset) {
+        if (operatorId.length != Constants.MAX_ID_BYTE_SIZE)
+            operatorId = new byte[Constants.MAX_ID_BYTE_SIZE];
+        System.arraycopy(src, offset, operatorId, 0, Constants.MAX_ID_BYTE_SIZE);
+    }
     public byte[] getOperatorId() { return operatorId; }
     public String getOperatorIdAsString() {
         if (operatorId != null) {
@@ -44,4 +51,11 @@ public class OperatorIdData extends MessageData {
         }
         return "";
     }
+
+    @Override
+    public OperatorIdData copy() {
+        OperatorIdData copy = (OperatorIdData) super.copy();
+        if (null != operatorId) copy.operatorId = operatorId.clone();
+        return copy;
+    }
 }
@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2025 Ken Taylor
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+package org.opendroneid.android.data;
+
+/** ReceiverLocation
+ * An immutable fix of this device's own location.  Each new fix gets the next epoch, so a
+ * distance worked out against one fix can be reused until the receiver or the drone moves.
+ */
+public final class ReceiverLocation {
+    private static final double EARTH_RADIUS_IN_METERS = 6371008.8;
+
+    public final double latitude;
+    public final double longitude;
+    public final long epoch;
+    private final double cosLatitude;
+
+    public ReceiverLocation(double latitude, double longitude, long epoch) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.epoch = epoch;
+        cosLatitude = Math.cos(Math.toRadians(latitude));
+    }
+
+    /* Equirectangular approximation of the distance in meters to a point.  Over the few
+     * kilometers Remote ID carries it is well within a meter of the geodesic distance.
+     */
+    public double distanceInMeters(double lat, double lng) {
+        double dLat = Math.toRadians(lat - latitude);
+        double dLng = Math.toRadians(lng - longitude) * cosLatitude;
+        return EARTH_RADIUS_IN_METERS * Math.sqrt(dLat * dLat + dLng * dLng);
+    }
+}
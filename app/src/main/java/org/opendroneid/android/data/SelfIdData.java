@@ -42,6 +42,13 @@ public class SelfIdData extends MessageData {
         if (operationDescription.length <= Constants.MAX_STRING_BYTE_SIZE)
             this.operationDescription = operationDescription;
     }
+
+    // Copy the description straight out of a received message into a buffer owned by this record.
+    public void setOperationDescription(byte[] src, int offset) {
+        if (operationDescription.length != Constants.MAX_STRING_BYTE_SIZE)
+            operationDescription = new byte[Constants.MAX_STRING_BYTE_SIZE];
+        System.arraycopy(src, offset, operationDescription, 0, Constants.MAX_STRING_BYTE_SIZE);
+    }
     public byte[] getOperationDescription() { return operationDescription; }
     public String getOperationDescriptionAsString() {
         if (operationDescription != null) {
@@ -54,4 +61,11 @@ public class SelfIdData extends MessageData {
         }
         return "";
     }
+
+    @Override
+    public SelfIdData copy() {
+        SelfIdData copy = (SelfIdData) super.copy();
+        if (null != operationDescription) copy.operationDescription = operationDescription.clone();
+        return copy;
+    }
 }
@@ -191,4 +191,7 @@ public class SystemData extends MessageData {
         return time.toString();
     }
     public void setSystemTimestamp(long systemTimestamp) { this.systemTimestamp = systemTimestamp; }
+
+    @Override
+    public SystemData copy() { return (SystemData) super.copy(); }
 }
\ No newline at end of file
@@ -0,0 +1,37 @@
+package org.ncssar.rid2caltopo.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class CaltopoWorkersTest {
+    @Test
+    public void sameIdAlwaysSameWorker() {
+        for (int count = 1; count <= 4; count++) {
+            int shard = CaltopoWorkers.ShardFor("1581F5FHC2345", count);
+            for (int i = 0; i < 10; i++)
+                assertEquals(shard, CaltopoWorkers.ShardFor(new String("1581F5FHC2345"), count));
+        }
+    }
+
+    /* "polygenelubricants" hashes to Integer.MIN_VALUE; negative hashes must still land in range. */
+    @Test
+    public void shardIsInRange() {
+        assertEquals(Integer.MIN_VALUE, "polygenelubricants".hashCode());
+        String[] ids = {"", "a", "polygenelubricants", "DRONE-" + Integer.MAX_VALUE, "zzzzzzzzzzzz"};
+        for (String id : ids) {
+            for (int count = 1; count <= 4; count++) {
+                int shard = CaltopoWorkers.ShardFor(id, count);
+                assertTrue(id, 0 <= shard && shard < count);
+            }
+        }
+    }
+
+    @Test
+    public void idsSpreadAcrossWorkers() {
+        int[] perWorker = new int[4];
+        for (int i = 0; i < 400; i++) perWorker[CaltopoWorkers.ShardFor("UAS" + i, 4)]++;
+        for (int n : perWorker) assertTrue(n > 50);
+    }
+}
@@ -0,0 +1,98 @@
+package org.ncssar.rid2caltopo.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Locale;
+
+public class CtDroneSpecTest {
+    private static final double METERS_PER_DEGREE = 111_195.0;
+
+    /* Vincenty's inverse formula on the WGS84 ellipsoid, as Location.distanceBetween() uses. */
+    private static double geodesicInMeters(double lat1, double lng1, double lat2, double lng2) {
+        final double a = 6378137.0;
+        final double f = 1 / 298.257223563;
+        final double b = a * (1 - f);
+        double L = Math.toRadians(lng2 - lng1);
+        double U1 = Math.atan((1 - f) * Math.tan(Math.toRadians(lat1)));
+        double U2 = Math.atan((1 - f) * Math.tan(Math.toRadians(lat2)));
+        double sinU1 = Math.sin(U1), cosU1 = Math.cos(U1);
+        double sinU2 = Math.sin(U2), cosU2 = Math.cos(U2);
+        double lambda = L, sinSigma, cosSigma, sigma, cos2Alpha, cos2SigmaM;
+        int iterations = 0;
+        while (true) {
+            double sinLambda = Math.sin(lambda), cosLambda = Math.cos(lambda);
+            double t1 = cosU2 * sinLambda;
+            double t2 = cosU1 * sinU2 - sinU1 * cosU2 * cosLambda;
+            sinSigma = Math.sqrt(t1 * t1 + t2 * t2);
+            if (0 == sinSigma) return 0;
+            cosSigma = sinU1 * sinU2 + cosU1 * cosU2 * cosLambda;
+            sigma = Math.atan2(sinSigma, cosSigma);
+            double sinAlpha = cosU1 * cosU2 * sinLambda / sinSigma;
+            cos2Alpha = 1 - sinAlpha * sinAlpha;
+            cos2SigmaM = 0 == cos2Alpha ? 0 : cosSigma - 2 * sinU1 * sinU2 / cos2Alpha;
+            double C = f / 16 * cos2Alpha * (4 + f * (4 - 3 * cos2Alpha));
+            double previous = lambda;
+            lambda = L + (1 - C) * f * sinAlpha *
+                    (sigma + C * sinSigma * (cos2SigmaM + C * cosSigma * (-1 + 2 * cos2SigmaM * cos2SigmaM)));
+            if (Math.abs(lambda - previous) < 1e-12 || ++iterations > 100) break;
+        }
+        double uSquared = cos2Alpha * (a * a - b * b) / (b * b);
+        double A = 1 + uSquared / 16384 * (4096 + uSquared * (-768 + uSquared * (320 - 175 * uSquared)));
+        double B = uSquared / 1024 * (256 + uSquared * (-128 + uSquared * (74 - 47 * uSquared)));
+        double deltaSigma = B * sinSigma * (cos2SigmaM + B / 4 * (cosSigma * (-1 + 2 * cos2SigmaM * cos2SigmaM) -
+                B / 6 * cos2SigmaM * (-3 + 4 * sinSigma * sinSigma) * (-3 + 4 * cos2SigmaM * cos2SigmaM)));
+        return b * A * (sigma - deltaSigma);
+    }
+
+    private static double equirectangularSquared(double lat, double lng, double lastLat, double lastLng) {
+        return CtDroneSpec.EquirectangularSquaredInMeters(lat, lng, lastLat, lastLng,
+                Math.cos(Math.toRadians(lastLat)));
+    }
+
+    /* checkNewWaypoint() only falls back to Location.distanceBetween() inside GATE_BAND, so the
+     * approximation has to stay inside it at every latitude and heading for short hops.
+     */
+    @Test
+    public void gateStaysWithinBandOfGeodesic() {
+        double[] distances = {0.3, 0.6, 0.61, 1.0, 5.0, 30.0};
+        double worst = 0;
+        for (double lastLat = -85; lastLat <= 85; lastLat += 5) {
+            for (double bearing = 0; bearing < 360; bearing += 15) {
+                for (double d : distances) {
+                    double b = Math.toRadians(bearing);
+                    double lastLng = -122.25;
+                    double lat = lastLat + d * Math.cos(b) / METERS_PER_DEGREE;
+                    double lng = lastLng + d * Math.sin(b) / (METERS_PER_DEGREE * Math.cos(Math.toRadians(lastLat)));
+                    double geodesic = geodesicInMeters(lastLat, lastLng, lat, lng);
+                    double error = Math.abs(equirectangularSquared(lat, lng, lastLat, lastLng) /
+                            (geodesic * geodesic) - 1.0);
+                    worst = Math.max(worst, error);
+                    assertTrue(String.format(Locale.US, "lat %.0f bearing %.0f %.2f m: %.4f",
+                            lastLat, bearing, d, error), error < CtDroneSpec.GATE_BAND);
+                }
+            }
+        }
+        // The sphere is about 1% off the ellipsoid near the equator and the poles, so this isn't
+        // passing only because the two distances agree everywhere.
+        assertTrue(worst > CtDroneSpec.GATE_BAND / 4);
+    }
+
+    @Test
+    public void samePointIsZero() {
+        assertEquals(0, equirectangularSquared(37.5, -122.25, 37.5, -122.25), 0);
+    }
+
+    @Test
+    public void wrapsAcrossTheAntimeridian() {
+        double lastLat = 51.0, lastLng = 179.99999, lat = 51.0, lng = -179.99999;
+        double geodesic = geodesicInMeters(lastLat, lastLng, lat, lng);
+        assertTrue(geodesic < 2);
+        assertEquals(1.0, equirectangularSquared(lat, lng, lastLat, lastLng) / (geodesic * geodesic),
+                CtDroneSpec.GATE_BAND);
+        assertEquals(1.0, equirectangularSquared(lastLat, lastLng, lat, lng) / (geodesic * geodesic),
+                CtDroneSpec.GATE_BAND);
+    }
+}
@@ -0,0 +1,89 @@
+package org.ncssar.rid2caltopo.data;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.ncssar.rid2caltopo.data.CtDroneSpec.TransportTypeEnum.BT4;
+import static org.ncssar.rid2caltopo.data.CtDroneSpec.TransportTypeEnum.WIFI;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opendroneid.android.data.LinkStats;
+
+public class WaypointSourceSelectorTest {
+    private static final long T0 = 100_000;
+
+    private CtDroneSpec droneSpec;
+    private LinkStats[] linkStats;
+    private WaypointSourceSelector selector;
+
+    @Before
+    public void setUp() {
+        CaltopoClient.DebugLevel = CaltopoClient.DebugLevelError;
+        droneSpec = new CtDroneSpec("TEST1");
+        linkStats = new LinkStats[CtDroneSpec.TransportTypeEnum.values().length];
+        for (int i = 0; i < linkStats.length; i++) linkStats[i] = new LinkStats();
+        droneSpec.setLinkStats(linkStats);
+        selector = new WaypointSourceSelector();
+    }
+
+    private boolean accept(CtDroneSpec.TransportTypeEnum tt, long droneTs, long now) {
+        return selector.accept(droneSpec, tt, droneTs, now);
+    }
+
+    /* With equal scores the first transport heard stays the primary; the other is held back. */
+    @Test
+    public void primaryPreferred() {
+        assertTrue(accept(BT4, 1000, T0));
+        assertFalse(accept(WIFI, 1100, T0 + 100));
+        assertTrue(accept(BT4, 1200, T0 + 200));
+        assertFalse(accept(WIFI, 1300, T0 + 300));
+    }
+
+    @Test
+    public void otherTransportFillsInAfterGap() {
+        assertTrue(accept(BT4, 1000, T0));
+        assertFalse(accept(WIFI, 2400, T0 + 1400));
+        assertTrue(accept(WIFI, 2600, T0 + 1600));
+        // The fill-in reset the gap, so the next non-primary waypoint waits again.
+        assertFalse(accept(WIFI, 2800, T0 + 1800));
+    }
+
+    @Test
+    public void stalePrimaryIsReplaced() {
+        assertTrue(accept(BT4, 1000, T0));
+        assertTrue(accept(WIFI, 4100, T0 + 3100));
+        // BT4 is back, but WiFi is fresh and no worse, so it stays the primary.
+        assertFalse(accept(BT4, 4200, T0 + 3200));
+        assertTrue(accept(WIFI, 4300, T0 + 3300));
+    }
+
+    @Test
+    public void nothingOlderThanLastAccepted() {
+        assertTrue(accept(BT4, 5000, T0));
+        assertFalse(accept(BT4, 4000, T0 + 100));
+        assertFalse(accept(BT4, 5000, T0 + 200));
+        assertTrue(accept(BT4, 5100, T0 + 300));
+        // A filled in waypoint has to be newer too.
+        assertFalse(accept(WIFI, 5050, T0 + 2000));
+        // No drone timestamp, nothing to compare.
+        assertTrue(accept(BT4, 0, T0 + 2100));
+    }
+
+    @Test
+    public void switchesAwayFromLossyTransport() {
+        assertTrue(accept(BT4, 1000, T0));
+        // Half the BT4 frames lost.
+        LinkStats bt4 = linkStats[BT4.ordinal()];
+        for (int i = 0; i < 10; i++) bt4.onFrame(i + 1, 1, 2 * i, 0);
+        assertTrue(accept(WIFI, 1100, T0 + 100));
+        assertFalse(accept(BT4, 1200, T0 + 200));
+    }
+
+    @Test
+    public void switchesAwayFromBackwardsTimestamps() {
+        assertTrue(accept(BT4, 1000, T0));
+        assertFalse(accept(WIFI, 1050, T0 + 50));
+        assertFalse(accept(BT4, 900, T0 + 100));
+        assertTrue(accept(WIFI, 1150, T0 + 150));
+    }
+}
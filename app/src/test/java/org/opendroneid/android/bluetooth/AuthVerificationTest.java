@@ -0,0 +1,181 @@
+package org.opendroneid.android.bluetooth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.ncssar.rid2caltopo.data.CtDroneSpec;
+import org.opendroneid.android.Constants;
+import org.opendroneid.android.data.AircraftObject;
+import org.opendroneid.android.data.AuthenticationData;
+import org.opendroneid.android.data.AuthenticationData.AuthTypeEnum;
+import org.opendroneid.android.data.AuthenticationData.VerificationEnum;
+
+public class AuthVerificationTest {
+    private static final long AUTH_EPOCH_SECONDS = 1546300800L;
+    private static final int UAS_ID_SIGNATURE = 1;
+
+    private static long nowAuthSeconds() {
+        return System.currentTimeMillis() / 1000 - AUTH_EPOCH_SECONDS;
+    }
+
+    /* An Auth message for page of a set of lastPage + 1 pages signed at timestamp.  The data
+     * bytes hold the page number so the combined signature can be checked.
+     */
+    private static byte[] page(int page, int lastPage, long timestamp) {
+        byte[] b = new byte[Constants.MAX_MESSAGE_SIZE];
+        b[0] = (byte) ((OpenDroneIdParser.Type.AUTH.id << 4) | 2);
+        b[1] = (byte) ((UAS_ID_SIGNATURE << 4) | page);
+        int dataOffset = 2;
+        if (0 == page) {
+            b[2] = (byte) lastPage;
+            b[3] = (byte) (Constants.MAX_AUTH_PAGE_ZERO_SIZE + lastPage * Constants.MAX_AUTH_PAGE_NON_ZERO_SIZE);
+            for (int i = 0; i < 4; i++) b[4 + i] = (byte) (timestamp >> (8 * i));
+            dataOffset = 8;
+        }
+        for (int i = dataOffset; i < b.length; i++) b[i] = (byte) (page + 1);
+        return b;
+    }
+
+    private static void receive(AircraftObject ac, byte[] message) {
+        AuthenticationData data = ac.getAuthPage();
+        OpenDroneIdParser.decodeAuthentication(message, 0, data, ac.getAuthPageData());
+        ac.combineAuthentication(data);
+    }
+
+    @Test
+    public void setCompletesWhenEveryPageHasArrived() {
+        AircraftObject ac = new AircraftObject(1);
+        long timestamp = nowAuthSeconds();
+        receive(ac, page(0, 2, timestamp));
+        assertFalse(ac.isAuthSetComplete());
+        receive(ac, page(2, 2, timestamp));
+        assertFalse(ac.isAuthSetComplete());
+        assertSame(VerificationEnum.Incomplete, ac.getAuthentication().getVerification());
+        receive(ac, page(1, 2, timestamp));
+        assertTrue(ac.isAuthSetComplete());
+        assertSame(VerificationEnum.Incomplete, ac.getAuthentication().getVerification());
+
+        byte[] combined = ac.getAuthentication().getAuthData();
+        assertEquals(1, combined[0]);
+        assertEquals(2, combined[Constants.MAX_AUTH_PAGE_ZERO_SIZE]);
+        assertEquals(3, combined[Constants.MAX_AUTH_PAGE_ZERO_SIZE + Constants.MAX_AUTH_PAGE_NON_ZERO_SIZE]);
+    }
+
+    /* Until page 0 arrives there's no telling which set a page belongs to, so pages heard
+     * before it are dropped with the previous set and the set completes on their repeat.
+     */
+    @Test
+    public void setNeedsPageZero() {
+        AircraftObject ac = new AircraftObject(1);
+        long timestamp = nowAuthSeconds();
+        receive(ac, page(1, 1, timestamp));
+        assertFalse(ac.isAuthSetComplete());
+        receive(ac, page(0, 1, timestamp));
+        assertFalse(ac.isAuthSetComplete());
+        receive(ac, page(1, 1, timestamp));
+        assertTrue(ac.isAuthSetComplete());
+    }
+
+    @Test
+    public void singlePageSet() {
+        AircraftObject ac = new AircraftObject(1);
+        receive(ac, page(0, 0, nowAuthSeconds()));
+        assertTrue(ac.isAuthSetComplete());
+    }
+
+    @Test
+    public void pageZeroOfANewSetStartsOver() {
+        AircraftObject ac = new AircraftObject(1);
+        long timestamp = nowAuthSeconds();
+        receive(ac, page(0, 1, timestamp));
+        receive(ac, page(1, 1, timestamp));
+        assertTrue(ac.isAuthSetComplete());
+        // The same set repeated stays complete.
+        receive(ac, page(0, 1, timestamp));
+        assertTrue(ac.isAuthSetComplete());
+
+        receive(ac, page(0, 1, timestamp + 1));
+        assertFalse(ac.isAuthSetComplete());
+        receive(ac, page(1, 1, timestamp + 1));
+        assertTrue(ac.isAuthSetComplete());
+
+        // A longer set needs its extra page.
+        receive(ac, page(0, 2, timestamp + 1));
+        receive(ac, page(1, 2, timestamp + 1));
+        assertFalse(ac.isAuthSetComplete());
+        receive(ac, page(2, 2, timestamp + 1));
+        assertTrue(ac.isAuthSetComplete());
+    }
+
+    @Test
+    public void checkStructure() {
+        long now = nowAuthSeconds();
+        assertSame(VerificationEnum.Unverified, AuthVerification.checkStructure(AuthTypeEnum.UAS_ID_Signature, now, 40));
+        assertSame(VerificationEnum.Unverified, AuthVerification.checkStructure(AuthTypeEnum.UAS_ID_Signature, now - 60 * 60, 40));
+        assertSame(VerificationEnum.Invalid, AuthVerification.checkStructure(AuthTypeEnum.UAS_ID_Signature, 0, 40));
+        assertSame(VerificationEnum.Invalid, AuthVerification.checkStructure(AuthTypeEnum.UAS_ID_Signature, now - 2 * 24 * 60 * 60, 40));
+        assertSame(VerificationEnum.Invalid, AuthVerification.checkStructure(AuthTypeEnum.UAS_ID_Signature, now, 0));
+        assertSame(VerificationEnum.Invalid, AuthVerification.checkStructure(AuthTypeEnum.None, now, 40));
+    }
+
+    /* The result is posted to the authentication record as soon as the set completes. */
+    @Test
+    public void verifyPostsResultToTheRecord() {
+        AircraftObject ac = new AircraftObject(1);
+        long timestamp = nowAuthSeconds();
+        receive(ac, page(0, 1, timestamp));
+        receive(ac, page(1, 1, timestamp));
+        AuthVerification.verify(ac);
+        assertSame(VerificationEnum.Unverified, ac.getAuthVerification());
+        assertSame(VerificationEnum.Unverified, ac.getAuthentication().getVerification());
+
+        // The result carries over the pages of the next set until it too completes.
+        receive(ac, page(0, 1, 0));
+        assertSame(VerificationEnum.Unverified, ac.getAuthentication().getVerification());
+        receive(ac, page(1, 1, 0));
+        AuthVerification.verify(ac);
+        assertSame(VerificationEnum.Invalid, ac.getAuthentication().getVerification());
+
+        // Back to a good set.
+        receive(ac, page(0, 1, timestamp));
+        receive(ac, page(1, 1, timestamp));
+        AuthVerification.verify(ac);
+        assertSame(VerificationEnum.Unverified, ac.getAuthentication().getVerification());
+    }
+
+    /* A set already checked isn't checked again, so a result set elsewhere stands. */
+    @Test
+    public void repeatedSetIsCheckedOnce() {
+        AircraftObject ac = new AircraftObject(1);
+        long timestamp = nowAuthSeconds();
+        receive(ac, page(0, 0, timestamp));
+        AuthVerification.verify(ac);
+        long fingerprint = ac.getAuthVerifiedFingerprint();
+        ac.setAuthVerification(VerificationEnum.Invalid);
+        receive(ac, page(0, 0, timestamp));
+        AuthVerification.verify(ac);
+        assertEquals(fingerprint, ac.getAuthVerifiedFingerprint());
+        assertSame(VerificationEnum.Invalid, ac.getAuthentication().getVerification());
+    }
+
+    /* Through the data manager: completing a set updates the record and marks it dirty. */
+    @Test
+    public void completedSetReachesTheRecordThroughIngest() {
+        OpenDroneIdDataManager dm = new OpenDroneIdDataManager(null);
+        long timestamp = nowAuthSeconds();
+        for (int p = 0; p <= 1; p++) {
+            byte[] message = page(p, 1, timestamp);
+            byte[] data = new byte[1 + message.length];
+            data[0] = (byte) p;
+            System.arraycopy(message, 0, data, 1, message.length);
+            dm.receiveData(1_000_000_000L, "01:23:45:67:89:AB", 0x0123456789ABL, -60,
+                           data, 1, data.length, CtDroneSpec.TransportTypeEnum.WIFI);
+        }
+        AircraftObject ac = dm.getAircraft().get(0);
+        assertTrue(ac.isAuthSetComplete());
+        assertSame(VerificationEnum.Unverified, ac.getAuthentication().getVerification());
+    }
+}
@@ -0,0 +1,31 @@
+package org.opendroneid.android.bluetooth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+import org.opendroneid.android.bluetooth.BluetoothScanner.ScanMode;
+
+public class BluetoothScannerTest {
+    private static final long QUIET_PERIOD_MSEC = 300_000;
+
+    @Test
+    public void scanModeThresholds() {
+        assertSame(ScanMode.LowLatency, BluetoothScanner.quietScanMode(0, QUIET_PERIOD_MSEC));
+        assertSame(ScanMode.LowLatency, BluetoothScanner.quietScanMode(QUIET_PERIOD_MSEC - 1, QUIET_PERIOD_MSEC));
+        assertSame(ScanMode.Balanced, BluetoothScanner.quietScanMode(QUIET_PERIOD_MSEC, QUIET_PERIOD_MSEC));
+        assertSame(ScanMode.Balanced, BluetoothScanner.quietScanMode(2 * QUIET_PERIOD_MSEC - 1, QUIET_PERIOD_MSEC));
+        assertSame(ScanMode.LowPower, BluetoothScanner.quietScanMode(2 * QUIET_PERIOD_MSEC, QUIET_PERIOD_MSEC));
+        assertSame(ScanMode.LowPower, BluetoothScanner.quietScanMode(24 * 60 * 60 * 1000L, QUIET_PERIOD_MSEC));
+    }
+
+    @Test
+    public void quietPeriodIsAtLeastTheCheckInterval() {
+        assertEquals(0, BluetoothScanner.quietPeriodMsec(0));
+        assertEquals(15_000, BluetoothScanner.quietPeriodMsec(1));
+        assertEquals(15_000, BluetoothScanner.quietPeriodMsec(14));
+        assertEquals(15_000, BluetoothScanner.quietPeriodMsec(15));
+        assertEquals(16_000, BluetoothScanner.quietPeriodMsec(16));
+        assertEquals(QUIET_PERIOD_MSEC, BluetoothScanner.quietPeriodMsec(300));
+    }
+}
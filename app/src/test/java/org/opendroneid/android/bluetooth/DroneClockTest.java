@@ -0,0 +1,45 @@
+package org.opendroneid.android.bluetooth;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class DroneClockTest {
+    private static final long HOUR = 60 * 60 * 1000;
+    // 2025-06-01 12:00:00 UTC, on an hour boundary.
+    private static final long NOON = 1748779200000L;
+
+    @Test
+    public void sameHour() {
+        assertEquals(NOON + 754_300, DroneClock.droneTimeMsec(7543, NOON + 755_000));
+        assertEquals(NOON, DroneClock.droneTimeMsec(0, NOON + 10));
+    }
+
+    /* Sent just before the hour, received just after it. */
+    @Test
+    public void sentInThePreviousHour() {
+        assertEquals(NOON - 500, DroneClock.droneTimeMsec(35995, NOON + 200));
+    }
+
+    /* The receiver's clock is a little behind the drone's across the hour. */
+    @Test
+    public void sentInTheNextHour() {
+        assertEquals(NOON + HOUR + 300, DroneClock.droneTimeMsec(3, NOON + HOUR - 400));
+    }
+
+    /* The hour picked is the one nearest the receive time, up to half an hour either way. */
+    @Test
+    public void nearestHourWins() {
+        long receive = NOON + 10 * 60 * 1000;
+        assertEquals(NOON + 40 * 60 * 1000, DroneClock.droneTimeMsec(24000, receive));
+        assertEquals(NOON - 19 * 60 * 1000, DroneClock.droneTimeMsec(24600, receive));
+    }
+
+    @Test
+    public void outOfRange() {
+        assertEquals(-1, DroneClock.droneTimeMsec(-1, NOON));
+        assertEquals(-1, DroneClock.droneTimeMsec(36000, NOON));
+        assertEquals(-1, DroneClock.droneTimeMsec(DroneClock.INVALID_TIMESTAMP, NOON));
+        assertEquals(NOON + HOUR - 100, DroneClock.droneTimeMsec(35999, NOON + HOUR - 50));
+    }
+}
@@ -0,0 +1,84 @@
+package org.opendroneid.android.bluetooth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class LongObjectMapTest {
+    @Test
+    public void putGetReplace() {
+        LongObjectMap<String> map = new LongObjectMap<>();
+        assertNull(map.put(1, "one"));
+        assertNull(map.put(-1, "minus one"));
+        assertNull(map.put(0, "zero"));
+        assertEquals("one", map.get(1));
+        assertEquals("minus one", map.get(-1));
+        assertEquals("zero", map.get(0));
+        assertNull(map.get(2));
+        assertEquals("one", map.put(1, "uno"));
+        assertEquals("uno", map.get(1));
+        assertEquals(3, map.size());
+    }
+
+    @Test
+    public void removeMissingKey() {
+        LongObjectMap<String> map = new LongObjectMap<>();
+        map.put(5, "five");
+        assertNull(map.remove(6));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void growKeepsEntries() {
+        LongObjectMap<Long> map = new LongObjectMap<>();
+        for (long k = 0; k < 1000; k++) map.put(k * 0x10000L, k);
+        assertEquals(1000, map.size());
+        for (long k = 0; k < 1000; k++) assertEquals(Long.valueOf(k), map.get(k * 0x10000L));
+    }
+
+    /* Removing from the middle of probe runs has to shift the entries after the hole back,
+     * or they become unreachable.  A small table and many keys make long, wrapping runs.
+     */
+    @Test
+    public void removeKeepsProbeRunsReachable() {
+        Random random = new Random(42);
+        LongObjectMap<Long> map = new LongObjectMap<>();
+        Map<Long, Long> expected = new HashMap<>();
+        for (int i = 0; i < 20000; i++) {
+            long key = random.nextInt(64);
+            if (random.nextBoolean()) {
+                Long value = (long) i;
+                assertEquals(expected.put(key, value), map.put(key, value));
+            } else {
+                assertEquals(expected.remove(key), map.remove(key));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (long key = 0; key < 64; key++) assertEquals(expected.get(key), map.get(key));
+    }
+
+    @Test
+    public void forEachVisitsEveryEntryOnce() {
+        LongObjectMap<Object> map = new LongObjectMap<>();
+        Map<Long, Object> expected = new HashMap<>();
+        for (long k = 1; k <= 40; k++) {
+            Object value = new Object();
+            map.put(k * 31, value);
+            expected.put(k * 31, value);
+        }
+        for (long k = 2; k <= 40; k += 2) {
+            map.remove(k * 31);
+            expected.remove(k * 31);
+        }
+        Map<Long, Object> visited = new HashMap<>();
+        map.forEach((key, value) -> assertNull(visited.put(key, value)));
+        assertEquals(expected.size(), visited.size());
+        for (Map.Entry<Long, Object> e : expected.entrySet()) assertSame(e.getValue(), visited.get(e.getKey()));
+    }
+}
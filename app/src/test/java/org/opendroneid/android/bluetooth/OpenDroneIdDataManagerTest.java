@@ -0,0 +1,175 @@
+package org.opendroneid.android.bluetooth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.ncssar.rid2caltopo.data.CaltopoClient;
+import org.ncssar.rid2caltopo.data.CtDroneSpec;
+import org.opendroneid.android.Constants;
+import org.opendroneid.android.data.AircraftObject;
+import org.opendroneid.android.data.LinkStats;
+
+import java.util.List;
+
+public class OpenDroneIdDataManagerTest {
+    private static final long MAC_A = 0x0123456789ABL;
+    private static final long MAC_B = 0x0123456789ACL;
+    private static final long MAC_C = 0x0123456789ADL;
+
+    // Serial number "1596F3A8B2C4D5E6F7A8" and CAA registration "FIN87astrdge12k8".
+    private static final String SERIAL_ID =
+            "02 12 31 35 39 36 46 33 41 38 42 32 43 34 44 35 45 36 46 37 41 38 00 00 00";
+    private static final String CAA_ID =
+            "02 22 46 49 4E 38 37 61 73 74 72 64 67 65 31 32 6B 38 00 00 00 00 00 00 00";
+    private static final String SELF_ID =
+            "32 00 53 65 61 72 63 68 20 61 6E 64 20 72 65 73 63 75 65 00 00 00 00 00 00";
+
+    private OpenDroneIdDataManager dm;
+
+    @Before
+    public void setUp() {
+        CaltopoClient.DebugLevel = CaltopoClient.DebugLevelError;
+        dm = new OpenDroneIdDataManager(null);
+    }
+
+    /* A WiFi style frame: msgCounter at 0, then the message. */
+    private void receive(long mac, String message, CtDroneSpec.TransportTypeEnum transportType) {
+        byte[] data = OpenDroneIdParserTest.frame(1, message);
+        dm.receiveData(1_000_000_000L, Long.toHexString(mac), mac, -60,
+                       data, 1, data.length, transportType);
+    }
+
+    private AircraftObject onlyAircraft() {
+        List<AircraftObject> aircraft = dm.getAircraft();
+        assertEquals(1, aircraft.size());
+        return aircraft.get(0);
+    }
+
+    @Test
+    public void twoMacsSharingABasicIdAreOneAircraft() {
+        receive(MAC_A, SERIAL_ID, CtDroneSpec.TransportTypeEnum.BT4);
+        AircraftObject ac = onlyAircraft();
+        receive(MAC_B, SERIAL_ID, CtDroneSpec.TransportTypeEnum.WIFI);
+        assertSame(ac, onlyAircraft());
+        // A frame without a Basic ID from the alias still lands on the same aircraft.
+        receive(MAC_B, SELF_ID, CtDroneSpec.TransportTypeEnum.WIFI);
+        assertSame(ac, onlyAircraft());
+        assertEquals("Search and rescue", ac.getSelfID().getOperationDescriptionAsString().trim());
+    }
+
+    @Test
+    public void aircraftRegistersUnderBothBasicIds() {
+        receive(MAC_A, SERIAL_ID, CtDroneSpec.TransportTypeEnum.BT4);
+        receive(MAC_A, CAA_ID, CtDroneSpec.TransportTypeEnum.BT4);
+        AircraftObject ac = onlyAircraft();
+        // Either ID, heard from a new MAC, resolves to the aircraft.
+        receive(MAC_B, CAA_ID, CtDroneSpec.TransportTypeEnum.WIFI);
+        receive(MAC_C, SERIAL_ID, CtDroneSpec.TransportTypeEnum.BT5);
+        assertSame(ac, onlyAircraft());
+    }
+
+    @Test
+    public void unidentifiedAircraftGivesWayToCanonical() {
+        receive(MAC_A, SERIAL_ID, CtDroneSpec.TransportTypeEnum.BT4);
+        AircraftObject ac = onlyAircraft();
+        receive(MAC_B, SELF_ID, CtDroneSpec.TransportTypeEnum.WIFI);
+        assertEquals(2, dm.getAircraft().size());
+        receive(MAC_B, SERIAL_ID, CtDroneSpec.TransportTypeEnum.WIFI);
+        assertSame(ac, onlyAircraft());
+    }
+
+    @Test
+    public void evictionRemovesEveryAliasAndUasId() {
+        receive(MAC_A, SERIAL_ID, CtDroneSpec.TransportTypeEnum.BT4);
+        receive(MAC_A, CAA_ID, CtDroneSpec.TransportTypeEnum.BT4);
+        receive(MAC_B, SERIAL_ID, CtDroneSpec.TransportTypeEnum.WIFI);
+        AircraftObject ac = onlyAircraft();
+
+        dm.evictIdle(1000);
+        assertEquals(0, dm.getAircraft().size());
+        // Neither the old MACs nor either UAS ID lead back to the evicted aircraft.
+        receive(MAC_B, SELF_ID, CtDroneSpec.TransportTypeEnum.WIFI);
+        assertNotSame(ac, onlyAircraft());
+        receive(MAC_C, CAA_ID, CtDroneSpec.TransportTypeEnum.BT5);
+        receive(MAC_A, SERIAL_ID, CtDroneSpec.TransportTypeEnum.BT4);
+        for (AircraftObject other : dm.getAircraft())
+            assertNotSame(ac, other);
+    }
+
+    @Test
+    public void aircraftOutlivesItsIdleAliases() {
+        receive(MAC_A, SERIAL_ID, CtDroneSpec.TransportTypeEnum.BT4);
+        AircraftObject ac = onlyAircraft();
+        dm.evictIdle(100);
+        receive(MAC_B, SERIAL_ID, CtDroneSpec.TransportTypeEnum.WIFI);
+        // MAC_A's alias has expired, MAC_B's hasn't.
+        dm.evictIdle(150);
+        assertSame(ac, onlyAircraft());
+        receive(MAC_C, SERIAL_ID, CtDroneSpec.TransportTypeEnum.BT5);
+        assertSame(ac, onlyAircraft());
+    }
+
+    /* A WiFi style frame: msgCounter at 0, then a Location message at 37.5, -122.25. */
+    private static byte[] locationFrame(int msgCounter) {
+        byte[] data = new byte[1 + Constants.MAX_MESSAGE_SIZE];
+        data[0] = (byte) msgCounter;
+        data[1] = (byte) ((OpenDroneIdParser.Type.LOCATION.id << 4) | 2);
+        putInt(data, 1 + 5, 375000000);
+        putInt(data, 1 + 9, -1222500000);
+        return data;
+    }
+
+    private static void putInt(byte[] b, int off, int v) {
+        for (int i = 0; i < 4; i++) b[off + i] = (byte) (v >> (8 * i));
+    }
+
+    @Test
+    public void newAircraftHasLinkStatsForEveryTransport() {
+        AircraftObject ac = new AircraftObject(MAC_A);
+        for (CtDroneSpec.TransportTypeEnum tt : CtDroneSpec.TransportTypeEnum.values())
+            assertNotNull(tt.toString(), ac.getLinkStats(tt));
+    }
+
+    @Test
+    public void receiveDataDecodesOneFrame() {
+        byte[] data = locationFrame(7);
+        dm.receiveData(1_000_000_000L, "01:23:45:67:89:AB", MAC_A, -60,
+                       data, 1, data.length, CtDroneSpec.TransportTypeEnum.WIFI);
+
+        AircraftObject ac = onlyAircraft();
+        assertEquals(37.5, ac.getLocation().getLatitude(), 1e-7);
+        assertEquals(-122.25, ac.getLocation().getLongitude(), 1e-7);
+
+        LinkStats stats = ac.getLinkStats(CtDroneSpec.TransportTypeEnum.WIFI);
+        assertEquals(1, stats.getReceived());
+        assertEquals(0, stats.getLost());
+        assertEquals(0, ac.getLinkStats(CtDroneSpec.TransportTypeEnum.BT4).getReceived());
+    }
+
+    private void receive(long timeNano, byte[] data, CtDroneSpec.TransportTypeEnum transportType) {
+        dm.receiveData(timeNano, "01:23:45:67:89:AB", MAC_A, -60, data, 1, data.length, transportType);
+    }
+
+    /* A repeat, on any transport, isn't decoded again but still counts for its transport. */
+    @Test
+    public void repeatedFrameIsDecodedOnce() {
+        receive(1_000_000_000L, locationFrame(7), CtDroneSpec.TransportTypeEnum.BT4);
+        AircraftObject ac = onlyAircraft();
+        receive(2_000_000_000L, locationFrame(7), CtDroneSpec.TransportTypeEnum.WIFI);
+        assertEquals(1_000_000_000L, ac.getLocation().getTimestamp());
+        assertEquals(1, ac.getLinkStats(CtDroneSpec.TransportTypeEnum.WIFI).getReceived());
+
+        // A new msgCounter, or new contents under the same one, is a new frame.
+        receive(3_000_000_000L, locationFrame(8), CtDroneSpec.TransportTypeEnum.WIFI);
+        assertEquals(3_000_000_000L, ac.getLocation().getTimestamp());
+        byte[] moved = locationFrame(8);
+        putInt(moved, 1 + 5, 375000100);
+        receive(4_000_000_000L, moved, CtDroneSpec.TransportTypeEnum.WIFI);
+        assertEquals(4_000_000_000L, ac.getLocation().getTimestamp());
+        assertEquals(37.50001, ac.getLocation().getLatitude(), 1e-7);
+    }
+}
@@ -0,0 +1,156 @@
+package org.opendroneid.android.bluetooth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class OpenDroneIdIngestQueueTest {
+    private static final int LOCATION = OpenDroneIdIngestQueue.LANE_LOCATION;
+    private static final int STATIC = OpenDroneIdIngestQueue.LANE_STATIC;
+
+    private static boolean offer(OpenDroneIdIngestQueue queue, int lane, int value) {
+        OpenDroneIdIngestQueue.Frame frame = queue.claim(lane, 0);
+        if (null == frame) return false;
+        frame.rssi = value;
+        queue.publish(lane, 1);
+        return true;
+    }
+
+    private static List<Integer> drainAll(OpenDroneIdIngestQueue queue, int lane) {
+        List<Integer> values = new ArrayList<>();
+        queue.drain(lane, frame -> values.add(frame.rssi), Integer.MAX_VALUE);
+        return values;
+    }
+
+    @Test
+    public void framesComeOutInOrder() {
+        OpenDroneIdIngestQueue queue = new OpenDroneIdIngestQueue(8);
+        for (int i = 0; i < 5; i++) offer(queue, LOCATION, i);
+        assertEquals(List.of(0, 1, 2, 3, 4), drainAll(queue, LOCATION));
+        assertEquals(List.of(), drainAll(queue, LOCATION));
+    }
+
+    @Test
+    public void drainStopsAtMaxFrames() {
+        OpenDroneIdIngestQueue queue = new OpenDroneIdIngestQueue(8);
+        for (int i = 0; i < 5; i++) offer(queue, LOCATION, i);
+        List<Integer> values = new ArrayList<>();
+        assertEquals(3, queue.drain(LOCATION, frame -> values.add(frame.rssi), 3));
+        assertEquals(List.of(0, 1, 2), values);
+        assertEquals(List.of(3, 4), drainAll(queue, LOCATION));
+    }
+
+    @Test
+    public void fullLaneDropsAndCounts() {
+        OpenDroneIdIngestQueue queue = new OpenDroneIdIngestQueue(4);
+        for (int i = 0; i < 4; i++) offer(queue, LOCATION, i);
+        assertNull(queue.claim(LOCATION, 0));
+        assertEquals(1, queue.getDroppedFrames(LOCATION));
+        // The other lane is unaffected.
+        assertTrue(offer(queue, STATIC, 9));
+        assertEquals(List.of(9), drainAll(queue, STATIC));
+        assertEquals(List.of(0, 1, 2, 3), drainAll(queue, LOCATION));
+        assertTrue(offer(queue, LOCATION, 4));
+        assertEquals(1, queue.getDroppedFrames());
+    }
+
+    @Test
+    public void claimAheadPublishesTogether() {
+        OpenDroneIdIngestQueue queue = new OpenDroneIdIngestQueue(8);
+        for (int i = 0; i < 3; i++) queue.claim(STATIC, i).rssi = 10 + i;
+        assertEquals(List.of(), drainAll(queue, STATIC));
+        queue.publish(STATIC, 3);
+        assertEquals(List.of(10, 11, 12), drainAll(queue, STATIC));
+    }
+
+    @Test
+    public void throwingHandlerReleasesItsFrame() {
+        OpenDroneIdIngestQueue queue = new OpenDroneIdIngestQueue(4);
+        for (int i = 0; i < 3; i++) offer(queue, LOCATION, i);
+        try {
+            queue.drain(LOCATION, frame -> {
+                if (1 == frame.rssi) throw new IllegalStateException("bad frame");
+            }, Integer.MAX_VALUE);
+            fail("expected the handler's exception");
+        } catch (IllegalStateException expected) {
+            // The bad frame is gone, the one after it is still there.
+        }
+        assertEquals(List.of(2), drainAll(queue, LOCATION));
+        for (int i = 0; i < 4; i++) assertTrue(offer(queue, LOCATION, i));
+    }
+
+    @Test
+    public void locationLaneGoesFirst() {
+        OpenDroneIdIngestQueue queue = new OpenDroneIdIngestQueue(16);
+        for (int i = 0; i < 3; i++) offer(queue, STATIC, 100 + i);
+        for (int i = 0; i < 3; i++) offer(queue, LOCATION, i);
+        List<Integer> values = new ArrayList<>();
+        assertEquals(6, queue.drainByPriority(frame -> values.add(frame.rssi), 8));
+        assertEquals(List.of(0, 1, 2, 100, 101, 102), values);
+    }
+
+    @Test
+    public void staticLaneGetsTheRestOfTheBatch() {
+        OpenDroneIdIngestQueue queue = new OpenDroneIdIngestQueue(16);
+        for (int i = 0; i < 10; i++) offer(queue, STATIC, 100 + i);
+        for (int i = 0; i < 2; i++) offer(queue, LOCATION, i);
+        List<Integer> values = new ArrayList<>();
+        assertEquals(8, queue.drainByPriority(frame -> values.add(frame.rssi), 8));
+        assertEquals(List.of(0, 1, 100, 101, 102, 103, 104, 105), values);
+    }
+
+    /* However busy the location lane is kept, every pass still drains STATIC_LANE_MIN_BATCH
+     * static frames, so identification and auth are delayed but never starved.
+     */
+    @Test
+    public void fullLocationLaneDoesNotStarveStatic() {
+        final int batchSize = 8;
+        final int staticFrames = 10;
+        OpenDroneIdIngestQueue queue = new OpenDroneIdIngestQueue(64);
+        for (int i = 0; i < staticFrames; i++) offer(queue, STATIC, -1 - i);
+        int[] drained = new int[OpenDroneIdIngestQueue.LANE_COUNT];
+        int next = 0;
+        int passes = 0;
+        while (drained[STATIC] < staticFrames) {
+            // Keep the location lane full.
+            while (offer(queue, LOCATION, next)) next++;
+            queue.drainByPriority(frame -> drained[frame.rssi < 0 ? STATIC : LOCATION]++, batchSize);
+            passes++;
+            assertTrue(passes <= (staticFrames + OpenDroneIdIngestQueue.STATIC_LANE_MIN_BATCH - 1)
+                                 / OpenDroneIdIngestQueue.STATIC_LANE_MIN_BATCH);
+        }
+        assertEquals(passes * batchSize, drained[LOCATION]);
+    }
+
+    @Test
+    public void producerAndConsumerThreads() throws InterruptedException {
+        final int total = 100_000;
+        OpenDroneIdIngestQueue queue = new OpenDroneIdIngestQueue(64);
+        int[] next = {0};
+        boolean[] outOfOrder = {false};
+        Thread consumer = new Thread(() -> {
+            while (next[0] < total) {
+                int handled = queue.drain(LOCATION, frame -> {
+                    if (frame.rssi != next[0]) outOfOrder[0] = true;
+                    next[0]++;
+                }, 16);
+                if (0 == handled) queue.await(10);
+            }
+        });
+        consumer.start();
+        for (int i = 0; i < total; ) {
+            if (offer(queue, LOCATION, i)) i++;
+            else Thread.yield();
+        }
+        consumer.join(10_000);
+        assertEquals(total, next[0]);
+        assertFalse(outOfOrder[0]);
+    }
+}
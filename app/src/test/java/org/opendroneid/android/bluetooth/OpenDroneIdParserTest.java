@@ -0,0 +1,284 @@
+package org.opendroneid.android.bluetooth;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+import org.opendroneid.android.Constants;
+import org.opendroneid.android.data.AuthenticationData;
+import org.opendroneid.android.data.Identification;
+import org.opendroneid.android.data.LocationData;
+import org.opendroneid.android.data.OperatorIdData;
+import org.opendroneid.android.data.SelfIdData;
+import org.opendroneid.android.data.SystemData;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/* Golden frames: one 25 byte message of each type, built by hand from the field layout in
+ * ASTM F3411 / opendroneid-core-c, decoded at an offset so the decoders can't assume 0.
+ */
+public class OpenDroneIdParserTest {
+    private static final int OFFSET = 3;
+
+    static byte[] frame(int offset, String hex) {
+        String[] bytes = hex.split(" ");
+        byte[] data = new byte[offset + bytes.length];
+        for (int i = 0; i < bytes.length; i++) data[offset + i] = (byte) Integer.parseInt(bytes[i], 16);
+        return data;
+    }
+
+    private static byte[] message(String hex) {
+        byte[] data = frame(OFFSET, hex);
+        assertEquals(OFFSET + Constants.MAX_MESSAGE_SIZE, data.length);
+        return data;
+    }
+
+    private static byte[] ascii(String s, int length) {
+        return Arrays.copyOf(s.getBytes(StandardCharsets.US_ASCII), length);
+    }
+
+    /* A pack of count messages of size bytes at OFFSET, each a Location message, padded to
+     * length bytes past OFFSET.
+     */
+    private static byte[] pack(int size, int count, int length) {
+        byte[] data = new byte[OFFSET + length];
+        data[OFFSET] = (byte) 0xF2;
+        data[OFFSET + 1] = (byte) size;
+        data[OFFSET + 2] = (byte) count;
+        for (int i = 0; i < count; i++) {
+            int sub = OFFSET + OpenDroneIdParser.PACK_MESSAGES_OFFSET + i * size;
+            if (sub < data.length) data[sub] = 0x12;
+        }
+        return data;
+    }
+
+    private static int packLength(int count) {
+        return OpenDroneIdParser.PACK_MESSAGES_OFFSET + count * Constants.MAX_MESSAGE_SIZE;
+    }
+
+    private static int validatePack(byte[] b, int offset) {
+        return OpenDroneIdParser.validatePack(b, offset, b.length);
+    }
+
+    @Test
+    public void validPack() {
+        byte[] b = pack(Constants.MAX_MESSAGE_SIZE, 3, packLength(3));
+        assertSame(OpenDroneIdParser.Type.MESSAGE_PACK, OpenDroneIdParser.type(b, OFFSET));
+        assertEquals(3, validatePack(b, OFFSET));
+        b = pack(Constants.MAX_MESSAGE_SIZE, Constants.MAX_MESSAGES_IN_PACK, packLength(9));
+        assertEquals(Constants.MAX_MESSAGES_IN_PACK, validatePack(b, OFFSET));
+    }
+
+    @Test
+    public void malformedPacks() {
+        assertEquals(0, validatePack(pack(Constants.MAX_MESSAGE_SIZE, 0, packLength(1)), OFFSET));
+        assertEquals(0, validatePack(pack(Constants.MAX_MESSAGE_SIZE, 10, packLength(10)), OFFSET));
+        assertEquals(0, validatePack(pack(Constants.MAX_MESSAGE_SIZE, 255, packLength(10)), OFFSET));
+        assertEquals(0, validatePack(pack(24, 3, packLength(3)), OFFSET));
+        assertEquals(0, validatePack(pack(26, 3, packLength(4)), OFFSET));
+        // The last message is one byte short.
+        assertEquals(0, validatePack(pack(Constants.MAX_MESSAGE_SIZE, 3, packLength(3) - 1), OFFSET));
+    }
+
+    @Test
+    public void nestedPack() {
+        byte[] b = pack(Constants.MAX_MESSAGE_SIZE, 3, packLength(3));
+        b[OFFSET + OpenDroneIdParser.PACK_MESSAGES_OFFSET + Constants.MAX_MESSAGE_SIZE] = (byte) 0xF2;
+        assertEquals(0, validatePack(b, OFFSET));
+    }
+
+    private static final String FLAGS_AD = "02 01 06";
+    private static final String BASIC_ID =
+            "02 12 31 35 39 36 46 33 41 38 42 32 43 34 44 35 45 36 46 37 41 38 00 00 00";
+
+    /* Service data AD: length, type 0x16, 16 bit UUID, app code, msgCounter 07 and a Basic ID. */
+    private static String serviceDataAd(String uuid, String appCode) {
+        return "1E 16 " + uuid + " " + appCode + " 07 " + BASIC_ID;
+    }
+
+    private static int findServiceData(String hex) {
+        byte[] b = frame(0, hex);
+        return OpenDroneIdParser.findServiceDataMessage(b, b.length);
+    }
+
+    @Test
+    public void serviceDataFirst() {
+        byte[] b = frame(0, serviceDataAd("FA FF", "0D"));
+        int offset = OpenDroneIdParser.findServiceDataMessage(b, b.length);
+        assertEquals(6, offset);
+        assertEquals(7, b[offset - 1]);
+        assertSame(OpenDroneIdParser.Type.BASIC_ID, OpenDroneIdParser.type(b, offset));
+        assertEquals(b.length, OpenDroneIdParser.serviceDataEnd(b, offset));
+    }
+
+    @Test
+    public void serviceDataAfterOtherAds() {
+        // Flags, then service data for another UUID, then ours.
+        String other = "05 16 6F FD 01 02";
+        byte[] b = frame(0, FLAGS_AD + " " + other + " " + serviceDataAd("FA FF", "0D") + " 00 00");
+        int offset = OpenDroneIdParser.findServiceDataMessage(b, b.length);
+        assertEquals(3 + 6 + 6, offset);
+        assertSame(OpenDroneIdParser.Type.BASIC_ID, OpenDroneIdParser.type(b, offset));
+        assertEquals(b.length - 2, OpenDroneIdParser.serviceDataEnd(b, offset));
+    }
+
+    @Test
+    public void serviceDataRejected() {
+        // A zero length AD is padding; nothing after it is looked at.
+        assertEquals(-1, findServiceData("00 " + serviceDataAd("FA FF", "0D")));
+        assertEquals(-1, findServiceData(serviceDataAd("FB FF", "0D")));
+        assertEquals(-1, findServiceData(serviceDataAd("FA FF", "0C")));
+        // Right UUID but too short to hold a message.
+        assertEquals(-1, findServiceData("05 16 FA FF 0D 07"));
+    }
+
+    @Test
+    public void serviceDataOverrun() {
+        // The first AD claims more bytes than there are.
+        assertEquals(-1, findServiceData("40 01 06 " + serviceDataAd("FA FF", "0D")));
+        // The service data AD is cut short by len.
+        byte[] b = frame(0, FLAGS_AD + " " + serviceDataAd("FA FF", "0D"));
+        assertEquals(-1, OpenDroneIdParser.findServiceDataMessage(b, b.length - 1));
+    }
+
+    @Test
+    public void macAddresses() {
+        assertEquals(0x0123456789ABL, OpenDroneIdParser.parseMacAddress("01:23:45:67:89:AB"));
+        assertEquals(0x0123456789ABL, OpenDroneIdParser.parseMacAddress("01-23-45-67-89-ab"));
+        assertEquals(0x0123456789ABL, OpenDroneIdParser.parseMacAddress("0123456789aB"));
+        assertEquals(0xFFFFFFFFFFFFL, OpenDroneIdParser.parseMacAddress("ff:FF:ff:FF:ff:FF"));
+        assertEquals(0L, OpenDroneIdParser.parseMacAddress("00:00:00:00:00:00"));
+        assertEquals(-1, OpenDroneIdParser.parseMacAddress("01:23:45:67:89:AG"));
+        assertEquals(-1, OpenDroneIdParser.parseMacAddress("01 23 45 67 89 AB"));
+        assertEquals(-1, OpenDroneIdParser.parseMacAddress("01:23:45:67:89"));
+        assertEquals(-1, OpenDroneIdParser.parseMacAddress("01:23:45:67:89:AB:CD"));
+        assertEquals(-1, OpenDroneIdParser.parseMacAddress(""));
+    }
+
+    @Test
+    public void basicId() {
+        // Serial number, helicopter or multirotor, "1596F3A8B2C4D5E6F7A8".
+        byte[] b = message("02 12 31 35 39 36 46 33 41 38 42 32 43 34 44 35 45 36 46 37 41 38 00 00 00");
+        assertSame(OpenDroneIdParser.Type.BASIC_ID, OpenDroneIdParser.type(b, OFFSET));
+        assertEquals(2, OpenDroneIdParser.version(b, OFFSET));
+        Identification id = new Identification();
+        OpenDroneIdParser.decodeBasicId(b, OFFSET, id);
+        assertSame(Identification.IdTypeEnum.Serial_Number, id.getIdType());
+        assertSame(Identification.UaTypeEnum.Helicopter_or_Multirotor, id.getUaType());
+        assertEquals("1596F3A8B2C4D5E6F7A8", id.getUasIdAsString());
+    }
+
+    @Test
+    public void location() {
+        // Airborne, height above ground, east-west bit set, 37.5 -122.25, 100/120/50 m,
+        // timestamp 1234.5 s past the hour.
+        byte[] b = message("12 26 5A 28 0A C0 0B 5A 16 60 21 22 B7 98 08 C0 08 34 08 4A 32 39 30 05 00");
+        assertSame(OpenDroneIdParser.Type.LOCATION, OpenDroneIdParser.type(b, OFFSET));
+        LocationData loc = new LocationData();
+        OpenDroneIdParser.decodeLocation(b, OFFSET, loc);
+        assertSame(LocationData.StatusEnum.Airborne, loc.getStatus());
+        assertSame(LocationData.heightTypeEnum.Ground, loc.getHeightType());
+        assertEquals(270, loc.getDirection(), 0);
+        assertEquals(10, loc.getSpeedHorizontal(), 0);
+        assertEquals(5, loc.getSpeedVertical(), 0);
+        assertEquals(37.5, loc.getLatitude(), 1e-9);
+        assertEquals(-122.25, loc.getLongitude(), 1e-9);
+        assertEquals(100, loc.getAltitudePressure(), 0);
+        assertEquals(120, loc.getAltitudeGeodetic(), 0);
+        assertEquals(50, loc.getHeight(), 0);
+        assertSame(LocationData.HorizontalAccuracyEnum.meters_10, loc.getHorizontalAccuracy());
+        assertSame(LocationData.VerticalAccuracyEnum.meters_10, loc.getVerticalAccuracy());
+        assertSame(LocationData.VerticalAccuracyEnum.meters_25, loc.getBaroAccuracy());
+        assertSame(LocationData.SpeedAccuracyEnum.meter_per_second_3, loc.getSpeedAccuracy());
+        assertEquals(12345, loc.getLocationTimestamp(), 0);
+        assertEquals(0.5, loc.getTimeAccuracy(), 1e-9);
+    }
+
+    @Test
+    public void authenticationPages() {
+        byte[] authData = new byte[Constants.MAX_AUTH_DATA];
+        AuthenticationData auth = new AuthenticationData();
+
+        // Page 0 of a two page UAS ID signature, 30 bytes long, signed at 100000 s.
+        byte[] b = message("22 10 01 1E A0 86 01 00 01 02 03 04 05 06 07 08 09 0A 0B 0C 0D 0E 0F 10 11");
+        assertSame(OpenDroneIdParser.Type.AUTH, OpenDroneIdParser.type(b, OFFSET));
+        OpenDroneIdParser.decodeAuthentication(b, OFFSET, auth, authData);
+        assertSame(AuthenticationData.AuthTypeEnum.UAS_ID_Signature, auth.getAuthType());
+        assertEquals(100000, OpenDroneIdParser.authTimestamp(b, OFFSET));
+        assertEquals("1 pages", auth.getAuthLastPageIndexAsString());
+        // The length shown covers every page sent, not just the signature.
+        assertEquals("40 bytes", auth.getAuthLengthAsString());
+
+        // Page 1 lands straight after page 0's 17 bytes.
+        b = message("22 11 12 13 14 15 16 17 18 19 1A 1B 1C 1D 1E 1F 20 21 22 23 24 25 26 27 28");
+        OpenDroneIdParser.decodeAuthentication(b, OFFSET, auth, authData);
+        for (int i = 0; i < Constants.MAX_AUTH_PAGE_ZERO_SIZE + Constants.MAX_AUTH_PAGE_NON_ZERO_SIZE; i++)
+            assertEquals(i + 1, authData[i]);
+        assertEquals(0, authData[40]);
+    }
+
+    /* The page number is 4 bits, so even page 15 ends exactly at MAX_AUTH_DATA. */
+    @Test
+    public void lastAuthenticationPageFits() {
+        byte[] authData = new byte[Constants.MAX_AUTH_DATA];
+        byte[] b = message("22 1F 12 13 14 15 16 17 18 19 1A 1B 1C 1D 1E 1F 20 21 22 23 24 25 26 27 28");
+        OpenDroneIdParser.decodeAuthentication(b, OFFSET, new AuthenticationData(), authData);
+        assertEquals(0x12, authData[Constants.MAX_AUTH_DATA - Constants.MAX_AUTH_PAGE_NON_ZERO_SIZE]);
+        assertEquals(0x28, authData[Constants.MAX_AUTH_DATA - 1]);
+    }
+
+    /* A last page index of 16 or more can't be sent, the set is treated as empty. */
+    @Test
+    public void badAuthenticationPageZero() {
+        byte[] b = message("22 10 10 1E A0 86 01 00 01 02 03 04 05 06 07 08 09 0A 0B 0C 0D 0E 0F 10 11");
+        AuthenticationData auth = new AuthenticationData();
+        OpenDroneIdParser.decodeAuthentication(b, OFFSET, auth, new byte[Constants.MAX_AUTH_DATA]);
+        assertEquals("0 pages", auth.getAuthLastPageIndexAsString());
+        assertEquals("0 bytes", auth.getAuthLengthAsString());
+    }
+
+    @Test
+    public void selfId() {
+        byte[] b = message("32 00 53 65 61 72 63 68 20 61 6E 64 20 72 65 73 63 75 65 00 00 00 00 00 00");
+        assertSame(OpenDroneIdParser.Type.SELFID, OpenDroneIdParser.type(b, OFFSET));
+        SelfIdData selfId = new SelfIdData();
+        OpenDroneIdParser.decodeSelfId(b, OFFSET, selfId);
+        assertSame(SelfIdData.descriptionTypeEnum.Text, selfId.getDescriptionType());
+        assertArrayEquals(ascii("Search and rescue", Constants.MAX_STRING_BYTE_SIZE),
+                          selfId.getOperationDescription());
+    }
+
+    @Test
+    public void system() {
+        // Dynamic operator location, EU classification, operator at 37.4 -122.1, one area of
+        // 50 m radius from 0 to 200 m, EU Open class 1, operator at 10 m.
+        byte[] b = message("42 05 80 C9 4A 16 C0 04 39 B7 01 00 05 60 09 D0 07 12 E4 07 00 C2 EB 0B 00");
+        assertSame(OpenDroneIdParser.Type.SYSTEM, OpenDroneIdParser.type(b, OFFSET));
+        SystemData system = new SystemData();
+        OpenDroneIdParser.decodeSystem(b, OFFSET, system);
+        assertSame(SystemData.operatorLocationTypeEnum.Dynamic, system.getOperatorLocationType());
+        assertSame(SystemData.classificationTypeEnum.EU, system.getclassificationType());
+        assertEquals(37.4, system.getOperatorLatitude(), 1e-9);
+        assertEquals(-122.1, system.getOperatorLongitude(), 1e-9);
+        assertEquals(1, system.getAreaCount());
+        assertEquals(50, system.getAreaRadius());
+        assertEquals(200, system.getAreaCeiling(), 0);
+        assertEquals(0, system.getAreaFloor(), 0);
+        assertSame(SystemData.categoryEnum.EU_Open, system.getCategory());
+        assertSame(SystemData.classValueEnum.EU_Class_1, system.getClassValue());
+        assertEquals(10, system.getOperatorAltitudeGeo(), 0);
+        assertEquals(200000000, OpenDroneIdParser.systemTimestamp(b, OFFSET));
+    }
+
+    @Test
+    public void operatorId() {
+        byte[] b = message("52 00 46 49 4E 38 37 61 73 74 72 64 67 65 31 32 6B 38 00 00 00 00 00 00 00");
+        assertSame(OpenDroneIdParser.Type.OPERATOR_ID, OpenDroneIdParser.type(b, OFFSET));
+        OperatorIdData operatorId = new OperatorIdData();
+        OpenDroneIdParser.decodeOperatorId(b, OFFSET, operatorId);
+        assertEquals(0, operatorId.getOperatorIdType());
+        assertArrayEquals(ascii("FIN87astrdge12k8", Constants.MAX_ID_BYTE_SIZE), operatorId.getOperatorId());
+    }
+}
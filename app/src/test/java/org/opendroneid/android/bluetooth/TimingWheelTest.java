@@ -0,0 +1,98 @@
+package org.opendroneid.android.bluetooth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class TimingWheelTest {
+    private static class Item extends TimingWheel.Node {
+        final String name;
+        Item(String name) { this.name = name; }
+    }
+
+    private final List<String> expired = new ArrayList<>();
+    private final TimingWheel.ExpiryHandler<Item> handler = item -> expired.add(item.name);
+
+    @Test
+    public void expiresAfterTtl() {
+        TimingWheel<Item> wheel = new TimingWheel<>(8, 3, 100);
+        wheel.add(new Item("a"));
+        assertEquals(0, wheel.advanceTo(102, handler));
+        assertEquals(1, wheel.advanceTo(103, handler));
+        assertEquals(List.of("a"), expired);
+        assertEquals(103, wheel.getCurrentTick());
+    }
+
+    @Test
+    public void touchExtendsLife() {
+        TimingWheel<Item> wheel = new TimingWheel<>(8, 3, 0);
+        Item a = new Item("a");
+        wheel.add(a);
+        wheel.advanceTo(2, handler);
+        wheel.touch(a);
+        assertEquals(0, wheel.advanceTo(4, handler));
+        assertEquals(1, wheel.advanceTo(5, handler));
+        assertEquals(List.of("a"), expired);
+    }
+
+    /* A node touched every tick must live across many laps of the wheel. */
+    @Test
+    public void touchedNodeSurvivesManyLaps() {
+        TimingWheel<Item> wheel = new TimingWheel<>(4, 2, 0);
+        Item a = new Item("a");
+        wheel.add(a);
+        for (long tick = 1; tick <= 50; tick++) {
+            assertEquals(0, wheel.advanceTo(tick, handler));
+            wheel.touch(a);
+        }
+        assertEquals(1, wheel.advanceTo(52, handler));
+    }
+
+    @Test
+    public void removedNodeNeverExpires() {
+        TimingWheel<Item> wheel = new TimingWheel<>(8, 3, 0);
+        Item a = new Item("a");
+        Item b = new Item("b");
+        Item c = new Item("c");
+        wheel.add(a);
+        wheel.add(b);
+        wheel.add(c);
+        wheel.remove(b);
+        wheel.remove(b);
+        assertEquals(2, wheel.advanceTo(3, handler));
+        assertEquals(List.of("c", "a"), expired);
+    }
+
+    /* After a gap longer than the wheel only one lap is walked, and everything is due. */
+    @Test
+    public void longGapExpiresEverythingInOneLap() {
+        TimingWheel<Item> wheel = new TimingWheel<>(8, 5, 0);
+        for (int i = 0; i < 20; i++) {
+            wheel.advanceTo(i % 4, handler);
+            wheel.add(new Item("n" + i));
+        }
+        assertEquals(20, wheel.advanceTo(1_000_000, handler));
+        assertEquals(1_000_000, wheel.getCurrentTick());
+        assertEquals(0, wheel.advanceTo(1_000_100, handler));
+    }
+
+    @Test
+    public void rejectsBadArguments() {
+        try {
+            new TimingWheel<Item>(6, 2, 0);
+            fail("slotCount not a power of 2");
+        } catch (IllegalArgumentException expected) { }
+        try {
+            new TimingWheel<Item>(8, 8, 0);
+            fail("ttlTicks not less than slotCount");
+        } catch (IllegalArgumentException expected) { }
+        try {
+            new TimingWheel<Item>(8, 0, 0);
+            fail("ttlTicks not positive");
+        } catch (IllegalArgumentException expected) { }
+    }
+}
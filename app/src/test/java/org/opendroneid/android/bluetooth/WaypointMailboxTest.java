@@ -0,0 +1,55 @@
+package org.opendroneid.android.bluetooth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.ncssar.rid2caltopo.data.CtDroneSpec;
+import org.opendroneid.android.data.LinkStats;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class WaypointMailboxTest {
+    private static final String REMOTE_ID = "1596F3A8B2C4D5E6F7A8";
+    private static final CtDroneSpec.TransportTypeEnum BT4 = CtDroneSpec.TransportTypeEnum.BT4;
+    private static final CtDroneSpec.TransportTypeEnum WIFI = CtDroneSpec.TransportTypeEnum.WIFI;
+
+    private final List<Runnable> posted = new ArrayList<>();
+    private final WaypointMailbox mailbox = new WaypointMailbox(REMOTE_ID,
+            new LinkStats[CtDroneSpec.TransportTypeEnum.values().length], (id, work) -> {
+        assertEquals(REMOTE_ID, id);
+        posted.add(work);
+    });
+
+    private boolean offer(int i, long frameKey, CtDroneSpec.TransportTypeEnum transportType) {
+        return mailbox.offer(37.5 + i * 1e-5, -122.25, 100, 1000L * i, frameKey, transportType);
+    }
+
+    @Test
+    public void burstPostsOneDrain() {
+        assertFalse(offer(1, 11, BT4));
+        assertTrue(offer(2, 12, BT4));
+        // Each transport has its own slot, so WiFi doesn't replace the Bluetooth position.
+        assertFalse(offer(3, 13, WIFI));
+        assertTrue(offer(4, 14, BT4));
+        assertTrue(offer(5, 15, WIFI));
+        assertEquals(1, posted.size());
+        assertEquals(3, mailbox.getCoalesced());
+    }
+
+    @Test
+    public void repeatedFrameKeyIsSkipped() {
+        assertFalse(offer(1, 11, BT4));
+        // A pending position that wasn't skipped would be replaced and counted.
+        assertFalse(offer(1, 11, BT4));
+        assertFalse(offer(1, 11, BT4));
+        assertEquals(0, mailbox.getCoalesced());
+        assertEquals(1, posted.size());
+        // A new position still replaces it.
+        assertTrue(offer(2, 12, BT4));
+        assertEquals(1, mailbox.getCoalesced());
+        assertEquals(1, posted.size());
+    }
+}
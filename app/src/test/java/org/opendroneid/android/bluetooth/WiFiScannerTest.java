@@ -0,0 +1,58 @@
+package org.opendroneid.android.bluetooth;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class WiFiScannerTest {
+    private static final long WINDOW_MSEC = 120_000;
+    private static final long NEARBY_SPACING_MSEC = WINDOW_MSEC / 4;
+    private static final long START_MSEC = 1_000_000;
+
+    /* A drone nearby: a scan every 30 s uses exactly 4 scans per 2 minutes. */
+    @Test
+    public void nearbyScansAreSpacedEvenly() {
+        WiFiScanner.ScanBudget budget = new WiFiScanner.ScanBudget();
+        for (int i = 0; i < 12; i++) {
+            long t = START_MSEC + i * NEARBY_SPACING_MSEC;
+            assertTrue("scan " + i, budget.allows(t, NEARBY_SPACING_MSEC));
+            budget.record(t);
+            assertFalse(budget.allows(t + NEARBY_SPACING_MSEC - 1, NEARBY_SPACING_MSEC));
+        }
+    }
+
+    /* However scans are bunched, a fifth is never allowed within 120 s of the first. */
+    @Test
+    public void neverMoreThanFourPerWindow() {
+        WiFiScanner.ScanBudget budget = new WiFiScanner.ScanBudget();
+        for (int i = 0; i < 4; i++) {
+            assertTrue(budget.allows(START_MSEC + i, 0));
+            budget.record(START_MSEC + i);
+        }
+        assertFalse(budget.allows(START_MSEC + 4, 0));
+        assertFalse(budget.allows(START_MSEC + WINDOW_MSEC - 1, 0));
+        assertTrue(budget.allows(START_MSEC + WINDOW_MSEC, 0));
+        budget.record(START_MSEC + WINDOW_MSEC);
+        // The window slides: the second scan has to age out before another.
+        assertFalse(budget.allows(START_MSEC + WINDOW_MSEC, 0));
+        assertTrue(budget.allows(START_MSEC + WINDOW_MSEC + 1, 0));
+    }
+
+    /* Nothing nearby: one scan per window, the rest of the budget is kept back. */
+    @Test
+    public void idleScansOncePerWindow() {
+        WiFiScanner.ScanBudget budget = new WiFiScanner.ScanBudget();
+        assertTrue(budget.allows(START_MSEC, WINDOW_MSEC));
+        budget.record(START_MSEC);
+        assertFalse(budget.allows(START_MSEC + WINDOW_MSEC - 1, WINDOW_MSEC));
+        assertTrue(budget.allows(START_MSEC + WINDOW_MSEC, WINDOW_MSEC));
+        // A drone turning up can use the other three without waiting for the window.
+        for (int i = 1; i < 4; i++) {
+            long t = START_MSEC + i * NEARBY_SPACING_MSEC;
+            assertTrue(budget.allows(t, NEARBY_SPACING_MSEC));
+            budget.record(t);
+        }
+        assertFalse(budget.allows(START_MSEC + 4 * NEARBY_SPACING_MSEC - 1, NEARBY_SPACING_MSEC));
+    }
+}
@@ -0,0 +1,65 @@
+package org.opendroneid.android.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.opendroneid.android.Constants;
+
+public class AircraftSnapshotTest {
+    @Test
+    public void firstSnapshotCopiesEverything() {
+        AircraftObject ac = new AircraftObject(1);
+        AircraftSnapshot s = new AircraftSnapshot(ac, null, AircraftSnapshot.LOCATION);
+        assertEquals(AircraftSnapshot.ALL, s.changed);
+        assertNotSame(ac.getConnection(), s.connection);
+        assertNotSame(ac.getIdentification1(), s.identification1);
+        assertNotSame(ac.getIdentification2(), s.identification2);
+        assertNotSame(ac.getLocation(), s.location);
+        assertNotSame(ac.getAuthentication(), s.authentication);
+        assertNotSame(ac.getSelfID(), s.selfId);
+        assertNotSame(ac.getSystem(), s.system);
+        assertNotSame(ac.getOperatorID(), s.operatorId);
+    }
+
+    @Test
+    public void unchangedRecordsAreShared() {
+        AircraftObject ac = new AircraftObject(1);
+        AircraftSnapshot first = new AircraftSnapshot(ac, null, AircraftSnapshot.ALL);
+        ac.getLocation().setLatitude(37.5);
+        AircraftSnapshot second = new AircraftSnapshot(ac, first, AircraftSnapshot.LOCATION);
+
+        assertTrue(second.hasChanged(AircraftSnapshot.LOCATION));
+        assertEquals(AircraftSnapshot.LOCATION, second.changed);
+        assertNotSame(first.location, second.location);
+        assertEquals(37.5, second.location.getLatitude(), 0);
+        assertSame(first.connection, second.connection);
+        assertSame(first.identification1, second.identification1);
+        assertSame(first.selfId, second.selfId);
+        assertSame(first.system, second.system);
+        assertSame(first.operatorId, second.operatorId);
+    }
+
+    /* The handlers decode into the aircraft's records in place; a snapshot must not see that. */
+    @Test
+    public void snapshotIsIsolatedFromLaterDecodes() {
+        AircraftObject ac = new AircraftObject(1);
+        ac.getLocation().setLatitude(10);
+        byte[] message = new byte[1 + Constants.MAX_STRING_BYTE_SIZE];
+        message[1] = 's';
+        ac.getSelfID().setOperationDescription(message, 1);
+        AircraftSnapshot s = new AircraftSnapshot(ac, null, AircraftSnapshot.ALL);
+        byte[] description = s.selfId.getOperationDescription().clone();
+
+        ac.getLocation().setLatitude(20);
+        message[1] = 'x';
+        ac.getSelfID().setOperationDescription(message, 1);
+
+        assertEquals(10, s.location.getLatitude(), 0);
+        assertArrayEquals(description, s.selfId.getOperationDescription());
+        assertEquals('s', s.selfId.getOperationDescription()[0]);
+    }
+}
@@ -0,0 +1,83 @@
+package org.opendroneid.android.data;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class LinkStatsTest {
+    private static final int LOCATION = 1;
+    private static final int SYSTEM = 4;
+    private static final long MSEC = 1_000_000;
+
+    @Test
+    public void noGapsNoLoss() {
+        LinkStats stats = new LinkStats();
+        for (int i = 0; i < 10; i++) stats.onFrame(i * 100 * MSEC + 1, LOCATION, i, -70);
+        assertEquals(10, stats.getReceived());
+        assertEquals(0, stats.getLost());
+        assertEquals(0, stats.getLossPercent(), 0);
+        assertEquals(10, stats.getRateHz(), 1e-3);
+        assertEquals(-70, stats.getRssiEwma(), 1e-3);
+    }
+
+    @Test
+    public void gapsCountAsLost() {
+        LinkStats stats = new LinkStats();
+        stats.onFrame(1, LOCATION, 10, 0);
+        stats.onFrame(2, LOCATION, 13, 0);
+        stats.onFrame(3, LOCATION, 14, 0);
+        assertEquals(3, stats.getReceived());
+        assertEquals(2, stats.getLost());
+        assertEquals(40, stats.getLossPercent(), 1e-3);
+    }
+
+    @Test
+    public void counterWrapsAt256() {
+        LinkStats stats = new LinkStats();
+        stats.onFrame(1, LOCATION, 254, 0);
+        stats.onFrame(2, LOCATION, 255, 0);
+        stats.onFrame(3, LOCATION, 1, 0);
+        assertEquals(3, stats.getReceived());
+        assertEquals(1, stats.getLost());
+    }
+
+    @Test
+    public void repeatedFrameIgnored() {
+        LinkStats stats = new LinkStats();
+        stats.onFrame(1, LOCATION, 5, 0);
+        stats.onFrame(2, LOCATION, 5, 0);
+        assertEquals(1, stats.getReceived());
+        assertEquals(0, stats.getLost());
+    }
+
+    /* A jump of more than 64 is the transmitter restarting its counter, not 100 lost frames. */
+    @Test
+    public void bigGapIsARestart() {
+        LinkStats stats = new LinkStats();
+        stats.onFrame(1, LOCATION, 100, 0);
+        stats.onFrame(2, LOCATION, 200, 0);
+        stats.onFrame(3, LOCATION, 201, 0);
+        assertEquals(3, stats.getReceived());
+        assertEquals(0, stats.getLost());
+
+        stats.onFrame(4, LOCATION, 201 + 64, 0);
+        assertEquals(63, stats.getLost());
+    }
+
+    /* Legacy adverts count per message type, so interleaved types must not look like gaps. */
+    @Test
+    public void countersArePerType() {
+        LinkStats stats = new LinkStats();
+        for (int i = 0; i < 5; i++) {
+            stats.onFrame(2 * i + 1, LOCATION, 40 + i, 0);
+            stats.onFrame(2 * i + 2, SYSTEM, 7 + i, 0);
+        }
+        assertEquals(10, stats.getReceived());
+        assertEquals(0, stats.getLost());
+    }
+
+    @Test
+    public void lossPercentZeroBeforeAnyFrame() {
+        assertEquals(0, new LinkStats().getLossPercent(), 0);
+    }
+}